@@ -0,0 +1,213 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: Convolution.java
+ * Description: Class Convolution applies a square kernel to a section of a Raster.
+ * Pixels whose whole neighborhood is inside the image go through an interior loop
+ * with no bounds checks, and the rest go through a border pass which samples
+ * outside the image according to an EdgeMode. Holds the motion blur and edge
+ * detection kernels used by Filter and QuadTree.
+ */
+public class Convolution {
+    /**
+     * How a kernel samples positions outside the image
+     */
+    public enum EdgeMode {
+        CLAMP, //use the nearest pixel inside the image
+        MIRROR, //reflect about the edge pixel, so -1 reads 1
+        ZERO, //positions outside the image add nothing
+        CENTER //use the pixel the kernel is centered on
+    }
+
+    //division value for motion blur pixel
+    private static final int FOURTH = 4;
+    //divison value for adjacent pixel values
+    private static final int EIGTH = 8;
+    //division value for corner pixel values
+    private static final int SIXTEENTH = 16;
+    //weight given to center pixel in edge detection. In CENTER mode the neighbors
+    //missing at a corner or side of the image cancel out of it, leaving the
+    //corner weight of 3 and side weight of 5
+    private static final int MIDDLEPIXELWEIGHT = 8;
+
+    /**
+     * Motion blur: the pixel over 4, adjacent pixels over 8 and corner pixels
+     * over 16, each divided before summing, with nothing added from outside the image
+     */
+    public static final Convolution MOTIONBLUR = new Convolution(3,
+            new int[] { 1, 1, 1, 1, 1, 1, 1, 1, 1 },
+            new int[] { shift(SIXTEENTH), shift(EIGTH), shift(SIXTEENTH),
+                        shift(EIGTH), shift(FOURTH), shift(EIGTH),
+                        shift(SIXTEENTH), shift(EIGTH), shift(SIXTEENTH) },
+            EdgeMode.ZERO);
+
+    /**
+     * Edge detection: the pixel times 8 less each of its neighbors, where
+     * neighbors outside the image are left out of the sum
+     */
+    public static final Convolution EDGEDETECT = new Convolution(3,
+            new int[] { -1, -1, -1, -1, MIDDLEPIXELWEIGHT, -1, -1, -1, -1 },
+            new int[9],
+            EdgeMode.CENTER);
+
+    private final int size; //width and height of the kernel
+    private final int radius; //distance from the center of the kernel to its edge
+    private final int[] weights; //weight of each tap, row-major
+    private final int[] shifts; //right shift applied to each weighted tap
+    private final EdgeMode mode; //how positions outside the image are sampled
+
+    /**
+     * Creates a kernel in which each tap adds (sample * weight) >> shift to
+     * its channel's total, and the absolute value of the total is the result
+     * @param size width and height of the kernel, which must be odd
+     * @param weights weight of each tap, row-major
+     * @param shifts right shift of each tap, row-major, e.g. 2 to divide by 4
+     * @param mode how positions outside the image are sampled
+     */
+    public Convolution(int size, int[] weights, int[] shifts, EdgeMode mode) {
+        if (size % 2 == 0 || weights.length != size * size || shifts.length != size * size) {
+            throw new IllegalArgumentException("kernel must be an odd square");
+        }
+        this.size = size;
+        this.radius = size / 2;
+        this.weights = weights.clone();
+        this.shifts = shifts.clone();
+        this.mode = mode;
+    }
+
+    /**
+     * Creates a copy of this kernel which samples outside the image differently
+     * @param mode how positions outside the image are sampled
+     * @return kernel with the same taps and the given EdgeMode
+     */
+    public Convolution withEdgeMode(EdgeMode mode) {
+        return new Convolution(size, weights, shifts, mode);
+    }
+
+    /**
+     * Applies the kernel to a section of an image. Only rows held by dst are
+     * written, and src must hold those rows and the kernel's radius around them.
+     * @param src image to be filtered
+     * @param dst image to hold the filtered section
+     * @param startRow start row of the section
+     * @param startCol start column of the section
+     * @param endRow end row (exclusive) of the section
+     * @param endCol end column (exclusive) of the section
+     */
+    public void apply(Raster src, Raster dst, int startRow, int startCol, int endRow, int endCol) {
+        startRow = Math.max(startRow, dst.firstRow());
+        endRow = Math.min(endRow, dst.endRow());
+        if (startRow >= endRow || startCol >= endCol) {
+            return;
+        }
+        //interior section, where every tap is inside the image
+        int innerStartRow = Math.max(startRow, radius);
+        int innerEndRow = Math.min(endRow, src.rows() - radius);
+        int innerStartCol = Math.max(startCol, radius);
+        int innerEndCol = Math.min(endCol, src.columns() - radius);
+        if (innerStartRow < innerEndRow && innerStartCol < innerEndCol) {
+            applyInterior(src, dst, innerStartRow, innerStartCol, innerEndRow, innerEndCol);
+        } else {
+            innerStartRow = startRow;
+            innerEndRow = startRow;
+            innerStartCol = startCol;
+            innerEndCol = startCol;
+        }
+        //border pass over the rest of the section
+        for (int x = startRow; x < endRow; x++) {
+            boolean innerRow = x >= innerStartRow && x < innerEndRow;
+            for (int y = startCol; y < endCol; y++) {
+                if (innerRow && y == innerStartCol) {
+                    y = innerEndCol - 1;
+                    continue;
+                }
+                applyBorder(src, dst, x, y);
+            }
+        }
+    }
+
+    /**
+     * Applies the kernel where every tap lies inside the image
+     * @param src image to be filtered
+     * @param dst image to hold the filtered section
+     * @param startRow start row of the section
+     * @param startCol start column of the section
+     * @param endRow end row (exclusive) of the section
+     * @param endCol end column (exclusive) of the section
+     */
+    private void applyInterior(Raster src, Raster dst, int startRow, int startCol, int endRow, int endCol) {
+        int[] in = src.pixels();
+        int[] out = dst.pixels();
+        int columns = src.columns();
+        int taps = weights.length;
+        int[] offsets = new int[taps];
+        for (int t = 0; t < taps; t++) {
+            offsets[t] = (t / size - radius) * columns + (t % size - radius);
+        }
+        for (int x = startRow; x < endRow; x++) {
+            PixelKernels.INSTANCE.convolve(in, src.rowOffset(x) + startCol, out, dst.rowOffset(x) + startCol,
+                    endCol - startCol, offsets, weights, shifts);
+        }
+    }
+
+    /**
+     * Applies the kernel to one pixel near the border of the image,
+     * sampling positions outside the image according to the EdgeMode
+     * @param src image to be filtered
+     * @param dst image to hold the filtered pixel
+     * @param x row of the pixel
+     * @param y column of the pixel
+     */
+    private void applyBorder(Raster src, Raster dst, int x, int y) {
+        int redTotal = 0;
+        int greenTotal = 0;
+        int blueTotal = 0;
+        for (int t = 0; t < weights.length; t++) {
+            int i = x + t / size - radius;
+            int j = y + t % size - radius;
+            boolean inside = i >= 0 && i < src.rows() && j >= 0 && j < src.columns();
+            if (!inside) {
+                if (mode == EdgeMode.ZERO) {
+                    continue;
+                } else if (mode == EdgeMode.CENTER) {
+                    i = x;
+                    j = y;
+                } else if (mode == EdgeMode.MIRROR) {
+                    i = mirror(i, src.rows());
+                    j = mirror(j, src.columns());
+                } else {
+                    i = Math.min(Math.max(i, 0), src.rows() - 1);
+                    j = Math.min(Math.max(j, 0), src.columns() - 1);
+                }
+            }
+            int rgb = src.getRGB(i, j);
+            redTotal += (Raster.red(rgb) * weights[t]) >> shifts[t];
+            greenTotal += (Raster.green(rgb) * weights[t]) >> shifts[t];
+            blueTotal += (Raster.blue(rgb) * weights[t]) >> shifts[t];
+        }
+        dst.set(x, y, Math.abs(redTotal), Math.abs(greenTotal), Math.abs(blueTotal));
+    }
+
+    /**
+     * Reflects an index about the edges of a range without repeating the edge
+     * @param index index which may lie outside [0, length)
+     * @param length length of the range
+     * @return reflected index inside [0, length)
+     */
+    private static int mirror(int index, int length) {
+        if (length == 1) {
+            return 0;
+        }
+        int period = 2 * (length - 1);
+        index = Math.abs(index) % period;
+        return index < length ? index : period - index;
+    }
+
+    /**
+     * Finds the right shift that divides by a power of two
+     * @param divisor power of two
+     * @return shift equal to dividing by divisor
+     */
+    private static int shift(int divisor) {
+        return Integer.numberOfTrailingZeros(divisor);
+    }
+}
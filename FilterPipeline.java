@@ -0,0 +1,251 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: FilterPipeline.java
+ * Description: Class FilterPipeline records a sequence of the point filters of
+ * class Filter and applies them together. The image is cut into tiles small
+ * enough to stay in cache, and every filter is run over a tile before moving
+ * on to the next, so a chain of filters costs one sweep through memory rather
+ * than one per filter. Tiles may be filtered in parallel. Filters which would
+ * leave the image as it is are dropped as they are added, such as a negative
+ * following a negative, or a grayscale of an image which is already gray.
+ * Runs of filters which map each channel on its own, negatives, tints and
+ * tone curves, are composed into a single ToneCurve, so they cost one table
+ * lookup per channel together.
+ */
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class FilterPipeline {
+    private static final int TILEPIXELS = 1 << 14; //pixels in a tile, 64 KB of packed pixels
+    private static final int TASKTILES = 4; //most tiles filtered by one parallel task
+    private static final int NEGATIVE = 0;
+    private static final int GRAYSCALE = 1;
+    private static final int TINT = 2;
+    private static final int CURVE = 3;
+    private static final int WHITE = 255; //channel value of a tint which changes nothing
+
+    private final List<Step> filters = new ArrayList<>(); //filters in the order they are applied
+
+    /**
+     * One filter of the pipeline
+     */
+    private static class Step {
+        private final int kind; //NEGATIVE, GRAYSCALE, TINT or CURVE
+        private final Color tint; //for TINT, the tint
+        private final ToneCurve curve; //for CURVE, the curve
+
+        private Step(int kind, Color tint, ToneCurve curve) {
+            this.kind = kind;
+            this.tint = tint;
+            this.curve = curve;
+        }
+
+        /**
+         * @return true if the filter maps each channel on its own
+         */
+        private boolean perChannel() { return kind != GRAYSCALE; }
+
+        /**
+         * @return the filter as a ToneCurve, if it maps each channel on its own
+         */
+        private ToneCurve toCurve() {
+            if (kind == NEGATIVE) {
+                return ToneCurve.negative();
+            }
+            return kind == TINT ? ToneCurve.tint(tint) : curve;
+        }
+    }
+
+    /**
+     * Adds a negative filter, see Filter.negative
+     * @return this pipeline
+     */
+    public FilterPipeline negative() {
+        if (!filters.isEmpty() && filters.get(filters.size() - 1).kind == NEGATIVE) {
+            //a negative undoes a negative
+            filters.remove(filters.size() - 1);
+        } else {
+            filters.add(new Step(NEGATIVE, null, null));
+        }
+        return this;
+    }
+
+    /**
+     * Adds a grayscale filter, see Filter.grayscale
+     * @return this pipeline
+     */
+    public FilterPipeline grayscale() {
+        if (!producesGray()) {
+            filters.add(new Step(GRAYSCALE, null, null));
+        }
+        return this;
+    }
+
+    /**
+     * Adds a tint filter, see Filter.tint
+     * @param tint Color to be used as the tint
+     * @return this pipeline
+     */
+    public FilterPipeline tint(Color tint) {
+        if (tint.getRed() != WHITE || tint.getGreen() != WHITE || tint.getBlue() != WHITE) {
+            filters.add(new Step(TINT, tint, null));
+        }
+        return this;
+    }
+
+    /**
+     * Adds a tone curve, see Filter.curve
+     * @param curve ToneCurve to be applied
+     * @return this pipeline
+     */
+    public FilterPipeline curve(ToneCurve curve) {
+        if (!curve.isIdentity()) {
+            filters.add(new Step(CURVE, null, curve));
+        }
+        return this;
+    }
+
+    /**
+     * @return number of filters held once trivial ones are dropped, before
+     * runs of per-channel filters are composed
+     */
+    public int size() { return filters.size(); }
+
+    /**
+     * Determines whether every pixel is gray after the filters so far, in
+     * which case a grayscale filter would change nothing: the gray level of
+     * a gray pixel is its own value, a negative of a gray pixel is gray,
+     * and so is a gray pixel tinted with a gray tint or mapped through a
+     * curve which treats every channel the same
+     * @return true if the filters always give a gray image
+     */
+    private boolean producesGray() {
+        boolean gray = false;
+        for (Step filter : filters) {
+            if (filter.kind == GRAYSCALE) {
+                gray = true;
+            } else if (filter.kind == TINT) {
+                gray = gray && filter.tint.getRed() == filter.tint.getGreen() && filter.tint.getGreen() == filter.tint.getBlue();
+            } else if (filter.kind == CURVE) {
+                gray = gray && filter.curve.isNeutral();
+            }
+        }
+        return gray;
+    }
+
+    /**
+     * Composes runs of per-channel filters into one curve where a table
+     * lookup is faster. A run holding a curve is always composed. Otherwise,
+     * with the scalar kernels, a run of two or more negatives and tints costs
+     * more than one lookup and is composed; the vector kernels are faster
+     * than a lookup, so runs of negatives and tints are kept as they are.
+     * @return filters to be applied to each tile
+     */
+    private List<Step> fuse() {
+        boolean scalar = !PixelKernels.INSTANCE.name().equals("vector");
+        List<Step> stages = new ArrayList<>();
+        int i = 0;
+        while (i < filters.size()) {
+            int end = i;
+            boolean hasCurve = false;
+            while (end < filters.size() && filters.get(end).perChannel()) {
+                hasCurve |= filters.get(end).kind == CURVE;
+                end++;
+            }
+            if (hasCurve || (scalar && end - i >= 2)) {
+                ToneCurve curve = filters.get(i).toCurve();
+                for (int j = i + 1; j < end; j++) {
+                    curve = curve.then(filters.get(j).toCurve());
+                }
+                if (!curve.isIdentity()) {
+                    stages.add(new Step(CURVE, null, curve));
+                }
+                i = end;
+            } else {
+                stages.add(filters.get(i));
+                i++;
+            }
+        }
+        return stages;
+    }
+
+    /**
+     * Applies every filter to an image, one tile at a time
+     * @param image Raster to be filtered
+     */
+    public void apply(Raster image) {
+        apply(image, false);
+    }
+
+    /**
+     * Applies every filter to an image, one tile at a time
+     * @param image Raster to be filtered
+     * @param parallel true to filter tiles in parallel
+     */
+    public void apply(Raster image, boolean parallel) {
+        int[] pixels = image.pixels();
+        int tiles = (pixels.length + TILEPIXELS - 1) / TILEPIXELS;
+        List<Step> stages = fuse();
+        if (parallel && tiles > TASKTILES) {
+            ForkJoinPool.commonPool().invoke(new ApplyTask(stages, pixels, 0, tiles));
+        } else {
+            apply(stages, pixels, 0, tiles);
+        }
+    }
+
+    /**
+     * Applies filters to a range of tiles, each in turn
+     * @param stages filters to be applied
+     * @param pixels packed pixels of the image
+     * @param firstTile index of the first tile
+     * @param endTile index after the last tile
+     */
+    private static void apply(List<Step> stages, int[] pixels, int firstTile, int endTile) {
+        PixelKernels kernels = PixelKernels.INSTANCE;
+        for (int tile = firstTile; tile < endTile; tile++) {
+            int from = tile * TILEPIXELS;
+            int to = Math.min(from + TILEPIXELS, pixels.length);
+            for (Step filter : stages) {
+                if (filter.kind == NEGATIVE) {
+                    kernels.negative(pixels, from, to);
+                } else if (filter.kind == GRAYSCALE) {
+                    kernels.grayscale(pixels, from, to);
+                } else if (filter.kind == TINT) {
+                    kernels.tint(pixels, from, to, filter.tint.getRed(), filter.tint.getGreen(), filter.tint.getBlue());
+                } else {
+                    filter.curve.apply(pixels, from, to);
+                }
+            }
+        }
+    }
+
+    /**
+     * Task which filters a range of tiles, forking halves of it while it
+     * holds more than TASKTILES tiles
+     */
+    private static class ApplyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L; //tasks are never serialized, but RecursiveAction is Serializable
+        private final List<Step> stages; //filters to be applied
+        private final int[] pixels; //packed pixels of the image
+        private final int firstTile; //index of the first tile
+        private final int endTile; //index after the last tile
+
+        private ApplyTask(List<Step> stages, int[] pixels, int firstTile, int endTile) {
+            this.stages = stages;
+            this.pixels = pixels;
+            this.firstTile = firstTile;
+            this.endTile = endTile;
+        }
+
+        @Override
+        protected void compute() {
+            if (endTile - firstTile <= TASKTILES) {
+                apply(stages, pixels, firstTile, endTile);
+                return;
+            }
+            int middle = (firstTile + endTile) >>> 1;
+            invokeAll(new ApplyTask(stages, pixels, firstTile, middle), new ApplyTask(stages, pixels, middle, endTile));
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: LinearQuadTree.java
+ * Description: Class LinearQuadTree holds only the leaves of a QuadTree, in
+ * Z-order, in three primitive arrays: a Morton code giving the path of
+ * quadrants from the root to each leaf, the leaf's depth, and its packed color.
+ * No Node objects are created; a leaf's bounds are found from its code when
+ * needed, and every operation is a scan over the arrays. Leaves covering no
+ * pixels are not stored. Provides the same rendering and filtering methods as QuadTree.
+ */
+
+import java.util.*;
+
+public class LinearQuadTree {
+    public static final int MAXDEPTH = 31; //deepest leaf whose path fits in a code
+    private static final int EDGEDEPTH = 4; //depth from which Nodes are traced by edgeDetector
+    private static final int BLURDEPTH = 3; //depth from which Nodes are blurred by motionBlur
+    private static final int OUTLINE = 0xFF0000; //color of Node outlines
+    private static final int BLACK = 0;
+    //quadrant numbers, which order children the same as QuadTree's pre-order
+    private static final int NORTHWEST = 0;
+    private static final int NORTHEAST = 1;
+    private static final int SOUTHWEST = 2;
+    private static final int SOUTHEAST = 3;
+
+    private final int rows; //number of rows in the image
+    private final int columns; //number of columns in the image
+    private long[] codes = new long[16]; //path of each leaf, two bits per level, first level highest
+    private byte[] depths = new byte[16]; //depth of each leaf
+    private int[] colors = new int[16]; //packed average color of each leaf
+    private int leafCount; //number of leaves held
+
+    /**
+     * Creates a tree with no leaves, to be filled by build or QuadTree.toLinear
+     * @param rows number of rows in the image
+     * @param columns number of columns in the image
+     */
+    LinearQuadTree(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * Builds the leaves divideRegulated would give a QuadTree of an image,
+     * without creating any Nodes
+     * @param image array of pixel color data to be compressed
+     * @param compressionLevel maxium allowed number of nodes per thousand pixels
+     * @param maxAcceptableError error threshold to hit or fall under for color difference
+     * @return tree of image
+     */
+    public static LinearQuadTree build(Raster image, double compressionLevel, double maxAcceptableError) {
+        LinearQuadTree tree = new LinearQuadTree(image.rows(), image.columns());
+        SummedAreaTable stats = new SummedAreaTable(image);
+        int maxLeaves = (int) (compressionLevel * image.rows() * image.columns());
+        tree.build(stats, 0L, 0, 0, 0, image.rows(), image.columns(), maxLeaves, maxAcceptableError);
+        tree.trim();
+        return tree;
+    }
+
+    /**
+     * Adds the leaves of a section of the image, dividing it the same way
+     * as QuadTree.shouldDivide
+     * @param stats channel totals of the image
+     * @param code path to the section
+     * @param depth depth of the section
+     * @param startRow start row of the section
+     * @param startCol start column of the section
+     * @param endRow end row (exclusive) of the section
+     * @param endCol end column (exclusive) of the section
+     * @param maxLeaves number of leaves allowed by the compression level
+     * @param maxAcceptableError error threshold to hit or fall under for color difference
+     */
+    private void build(RegionStats stats, long code, int depth, int startRow, int startCol, int endRow, int endCol,
+            int maxLeaves, double maxAcceptableError) {
+        int area = (endRow - startRow) * (endCol - startCol);
+        if (area < 1) {
+            return;
+        }
+        int average = averageColor(stats, startRow, startCol, endRow, endCol);
+        boolean split = false;
+        if (area >= 2 && depth < MAXDEPTH && Math.pow(4, depth) <= maxLeaves) {
+            long squaredError = stats.squaredError(startRow, startCol, endRow, endCol,
+                    new Color(Raster.red(average), Raster.green(average), Raster.blue(average)));
+            split = Math.abs((double) squaredError / area) >= maxAcceptableError;
+        }
+        if (!split) {
+            addLeaf(code, depth, average);
+            return;
+        }
+        int midRow = (endRow - startRow) / 2 + startRow;
+        int midCol = (endCol - startCol) / 2 + startCol;
+        int shift = 2 * (MAXDEPTH - depth - 1);
+        build(stats, code | ((long) NORTHWEST << shift), depth + 1, startRow, startCol, midRow, midCol, maxLeaves, maxAcceptableError);
+        build(stats, code | ((long) NORTHEAST << shift), depth + 1, startRow, midCol, midRow, endCol, maxLeaves, maxAcceptableError);
+        build(stats, code | ((long) SOUTHWEST << shift), depth + 1, midRow, startCol, endRow, midCol, maxLeaves, maxAcceptableError);
+        build(stats, code | ((long) SOUTHEAST << shift), depth + 1, midRow, midCol, endRow, endCol, maxLeaves, maxAcceptableError);
+    }
+
+    /**
+     * Finds the average color of a section the same way as QuadTree
+     * @param stats channel totals of the image
+     * @param startRow start row of the section
+     * @param startCol start column of the section
+     * @param endRow end row (exclusive) of the section
+     * @param endCol end column (exclusive) of the section
+     * @return packed average color
+     */
+    private static int averageColor(RegionStats stats, int startRow, int startCol, int endRow, int endCol) {
+        double area = (endRow - startRow) * (endCol - startCol);
+        return Raster.pack((int) (stats.sumRed(startRow, startCol, endRow, endCol) / area),
+                (int) (stats.sumGreen(startRow, startCol, endRow, endCol) / area),
+                (int) (stats.sumBlue(startRow, startCol, endRow, endCol) / area));
+    }
+
+    /**
+     * Appends a leaf, which must follow every leaf already held in Z-order
+     * @param code path to the leaf, two bits per level with the first level
+     * in bits 61-60, NORTHWEST 0, NORTHEAST 1, SOUTHWEST 2, SOUTHEAST 3
+     * @param depth depth of the leaf
+     * @param rgb packed color of the leaf
+     */
+    void addLeaf(long code, int depth, int rgb) {
+        if (leafCount == codes.length) {
+            int capacity = codes.length * 2;
+            codes = Arrays.copyOf(codes, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+            colors = Arrays.copyOf(colors, capacity);
+        }
+        codes[leafCount] = code;
+        depths[leafCount] = (byte) depth;
+        colors[leafCount] = rgb;
+        leafCount++;
+    }
+
+    /**
+     * Drops the unused ends of the arrays once every leaf has been added
+     */
+    void trim() {
+        codes = Arrays.copyOf(codes, leafCount);
+        depths = Arrays.copyOf(depths, leafCount);
+        colors = Arrays.copyOf(colors, leafCount);
+    }
+
+    public int rows() { return rows; }
+
+    public int columns() { return columns; }
+
+    public int leafCount() { return leafCount; }
+
+    public long code(int leaf) { return codes[leaf]; }
+
+    public int depth(int leaf) { return depths[leaf]; }
+
+    public int color(int leaf) { return colors[leaf]; }
+
+    /**
+     * Finds the bounds of a leaf by following its path from the root
+     * @param leaf index of the leaf
+     * @param bounds array of at least four ints to hold the start row, start
+     * column, end row and end column (both exclusive) of the leaf
+     */
+    public void bounds(int leaf, int[] bounds) {
+        int startRow = 0;
+        int startCol = 0;
+        int endRow = rows;
+        int endCol = columns;
+        long code = codes[leaf];
+        for (int d = 0; d < depths[leaf]; d++) {
+            int quadrant = (int) (code >>> (2 * (MAXDEPTH - d - 1))) & 3;
+            int midRow = (endRow - startRow) / 2 + startRow;
+            int midCol = (endCol - startCol) / 2 + startCol;
+            if ((quadrant & 2) == 0) {
+                endRow = midRow;
+            } else {
+                startRow = midRow;
+            }
+            if ((quadrant & 1) == 0) {
+                endCol = midCol;
+            } else {
+                startCol = midCol;
+            }
+        }
+        bounds[0] = startRow;
+        bounds[1] = startCol;
+        bounds[2] = endRow;
+        bounds[3] = endCol;
+    }
+
+    /**
+     * Fills a Raster with the color of each leaf
+     * @param newPicture array of color data to be populated
+     */
+    public void quadCompression(Raster newPicture) {
+        int[] b = new int[4];
+        for (int leaf = 0; leaf < leafCount; leaf++) {
+            bounds(leaf, b);
+            fill(newPicture, b, colors[leaf]);
+        }
+    }
+
+    /**
+     * Fills a Raster with the color of each leaf, outlining each leaf in red
+     * @param newPicture array of color data to be populated
+     */
+    public void quadCompressionOutlined(Raster newPicture) {
+        int[] b = new int[4];
+        for (int leaf = 0; leaf < leafCount; leaf++) {
+            bounds(leaf, b);
+            fill(newPicture, b, colors[leaf]);
+            outline(newPicture, b);
+        }
+    }
+
+    /**
+     * Outlines each leaf in red, leaving the rest of a Raster as it is
+     * @param edgePicture array of outlined pixels
+     */
+    public void quadEdgeOutlined(Raster edgePicture) {
+        int[] b = new int[4];
+        for (int leaf = 0; leaf < leafCount; leaf++) {
+            bounds(leaf, b);
+            outline(edgePicture, b);
+        }
+    }
+
+    /**
+     * Traces edges in the detailed parts of an image, blacking out leaves
+     * shallower than EDGEDEPTH, the same as QuadTree.edgeDetector
+     * @param origArray image to be traced
+     * @param edgeArray array of image with edge filter applied
+     */
+    public void edgeDetector(Raster origArray, Raster edgeArray) {
+        int[] b = new int[4];
+        for (int leaf = 0; leaf < leafCount; leaf++) {
+            bounds(leaf, b);
+            if (depths[leaf] < EDGEDEPTH) {
+                fill(edgeArray, b, BLACK);
+            } else {
+                Convolution.EDGEDETECT.apply(origArray, edgeArray, b[0], b[1], b[2], b[3]);
+            }
+        }
+    }
+
+    /**
+     * Blurs the detailed parts of an image, filling leaves shallower than
+     * BLURDEPTH with their color, the same as QuadTree.motionBlur
+     * @param origArray Raster to be filtered
+     * @param motionArray Raster with filter applied
+     */
+    public void motionBlur(Raster origArray, Raster motionArray) {
+        int[] b = new int[4];
+        for (int leaf = 0; leaf < leafCount; leaf++) {
+            bounds(leaf, b);
+            if (depths[leaf] < BLURDEPTH) {
+                fill(motionArray, b, colors[leaf]);
+            } else {
+                Convolution.MOTIONBLUR.apply(origArray, motionArray, b[0], b[1], b[2], b[3]);
+            }
+        }
+    }
+
+    /**
+     * Sets every pixel of a section held by a Raster to one color
+     * @param image Raster to be filled, which may hold only a band of rows
+     * @param b start row, start column, end row and end column of the section
+     * @param rgb packed color
+     */
+    private static void fill(Raster image, int[] b, int rgb) {
+        int[] pixels = image.pixels();
+        for (int i = Math.max(b[0], image.firstRow()); i < Math.min(b[2], image.endRow()); i++) {
+            int offset = image.rowOffset(i);
+            Arrays.fill(pixels, offset + b[1], offset + b[3], rgb);
+        }
+    }
+
+    /**
+     * Sets the border pixels of a section held by a Raster to red
+     * @param image Raster to be outlined, which may hold only a band of rows
+     * @param b start row, start column, end row and end column of the section
+     */
+    private static void outline(Raster image, int[] b) {
+        int[] pixels = image.pixels();
+        for (int i = Math.max(b[0], image.firstRow()); i < Math.min(b[2], image.endRow()); i++) {
+            int offset = image.rowOffset(i);
+            if (i == b[0] || i == b[2] - 1) {
+                Arrays.fill(pixels, offset + b[1], offset + b[3], OUTLINE);
+            } else {
+                pixels[offset + b[1]] = OUTLINE;
+                pixels[offset + b[3] - 1] = OUTLINE;
+            }
+        }
+    }
+}
@@ -5,102 +5,961 @@
  */
 
 import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
 
 public class Main {
     public static final double[] COMPRESSIONLEVELS = {.002, .004, .01, .033, .077, .2, .5, .75}; //values for the compression levels
     public static final int NUMCOMPRESSIONLEVELS = 8; //number of levels of compression, or number of QuadTrees needed
     public static final double ERRORTOLERANCE = 5; //maximum tolerance for mean squared error in each node (overridden by compression level)
     public static final double DEFAULTCOMPRESSION = .01; 
+    public static final int MAXTILEDEPTH = 10; //deepest QuadTree level used to cut an image into bands
+    public static final String QTCEXTENSION = ".qtc"; //extension of files holding a QuadTree rather than an image
+    public static final int FRAMEBLOCK = 16; //side of the blocks compared between frames of a sequence
+    public static final long DEFAULTCACHEMB = 1024; //size cap of a tree cache, in megabytes
 
     public static void main(String[] args) {
         try {
-            String infile = "";
-            String outfileStub = "";
-            boolean compress = false;
-            boolean edgeDetect = false;
-            boolean blur = false;
-            boolean outlined = false;
+            run(args, false);
+        } 
+        catch (IOException | IllegalArgumentException e) {
+            System.out.println(failureMessage(e) + (e.getMessage() != null ? " (" + e.getMessage() + ")" : ""));
+        }
+    }
 
-            
-            for (int i = 0; i < args.length; i++) {
-                if (args[i].equals("-i")) {
-                    if (i + 1 < args.length) { infile = args[++i]; }
-                    else { throw new IllegalArgumentException(); }
+    /**
+     * Gives the message printed when processing fails
+     * @param e exception thrown while processing
+     * @return message describing e
+     */
+    private static String failureMessage(Exception e) {
+        if (e instanceof FileNotFoundException || e instanceof NoSuchFileException) {
+            return "File not found";
+        }
+        if (e instanceof IllegalArgumentException) {
+            return "Illegal or missing argument";
+        }
+        if (e instanceof MalformedFileException || e instanceof EOFException) {
+            //only the readers throw these, so the input is at fault rather than the output
+            return "Input file is damaged or not a supported format";
+        }
+        if (e instanceof IOException) {
+            return "Error with output file name";
+        }
+        return e.toString();
+    }
+
+    /**
+     * Processes one image, or a sequence or batch of images, as given by
+     * command line arguments
+     * @param args command line arguments
+     * @param inBatch true if the image is one of a batch, run alongside others
+     * @throws IOException if an error occurs reading or writing a file
+     * @throws IllegalArgumentException if the arguments are illegal or missing
+     */
+    private static void run(String[] args, boolean inBatch) throws IOException {
+        String infile = "";
+        String outfileStub = "";
+        boolean compress = false;
+        boolean edgeDetect = false;
+        boolean blur = false;
+        boolean outlined = false;
+        boolean parallel = false;
+        String format = "P3";
+        boolean verbose = false;
+        boolean writeTree = false; //write compressed levels as .qtc trees rather than images
+        boolean levelOrder = false; //write .qtc trees a level at a time, so they can be previewed
+        int previewDepth = Integer.MAX_VALUE; //depth at which to stop decoding a .qtc input
+        long previewBytes = Long.MAX_VALUE; //most bytes of a .qtc input to decode
+        int leafBudget = 0; //if positive, build trees best-first with at most this many leaves
+        boolean linear = false; //use LinearQuadTree rather than QuadTree Nodes
+        long bandPixels = 0; //if positive, process the image in bands of at most this many pixels
+        int firstFrame = -1; //if not negative, number of the first frame of a sequence named by -i and -o
+        String batchInput = ""; //directory of images, or file listing them, to be processed into the directory -o
+        int threads = Runtime.getRuntime().availableProcessors(); //most images processed at once in a batch
+        String metricsFile = ""; //if not empty, file to which a JSON report of each phase is written, or "-"
+        double targetMse = -1; //if not negative, build the tree with the fewest Nodes whose mean squared error is at most this
+        int targetLeaves = 0; //if positive, build the closest tree to the image with at most this many leaves
+        boolean quality = false; //measure each compressed image against the original
+        boolean heatmap = false; //write a heatmap of the error of each leaf beside each compressed image
+        String cacheDirectory = ""; //if not empty, directory in which built trees are kept for later runs
+        long cacheMegabytes = DEFAULTCACHEMB; //most megabytes the tree cache may hold
+
+        
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-i")) {
+                if (i + 1 < args.length) { infile = args[++i]; }
+                else { throw new IllegalArgumentException(); }
+            }
+            else if (args[i].equals("-o")) {
+                if (i + 1 < args.length) { outfileStub = args[++i]; }
+                else { throw new IllegalArgumentException(); }
+            }
+            else if (args[i].equals("-c")) {
+                compress = true;
+            }
+            else if (args[i].equals("-e")) {
+                edgeDetect = true;
+            }
+            else if (args[i].equals("-x")) {
+                blur = true;
+            }
+            else if (args[i].equals("-t")) {
+                outlined = true;
+            }
+            else if (args[i].equals("-p")) {
+                parallel = true;
+            }
+            else if (args[i].equals("-v")) {
+                verbose = true;
+            }
+            else if (args[i].equals("-q")) {
+                writeTree = true;
+            }
+            else if (args[i].equals("-l")) {
+                levelOrder = true;
+            }
+            else if (args[i].equals("-k")) {
+                if (i + 1 < args.length) { previewDepth = Integer.parseInt(args[++i]); }
+                else { throw new IllegalArgumentException(); }
+            }
+            else if (args[i].equals("-z")) {
+                linear = true;
+            }
+            else if (args[i].equals("-n")) {
+                if (i + 1 < args.length) { leafBudget = Integer.parseInt(args[++i]); }
+                else { throw new IllegalArgumentException(); }
+            }
+            else if (args[i].equals("-b")) {
+                if (i + 1 < args.length) { previewBytes = Long.parseLong(args[++i]); }
+                else { throw new IllegalArgumentException(); }
+            }
+            else if (args[i].equals("-T")) {
+                if (i + 1 < args.length) { bandPixels = Long.parseLong(args[++i]); }
+                else { throw new IllegalArgumentException(); }
+                if (bandPixels <= 0) { throw new IllegalArgumentException(); }
+            }
+            else if (args[i].equals("-s")) {
+                if (i + 1 < args.length) { firstFrame = Integer.parseInt(args[++i]); }
+                else { throw new IllegalArgumentException(); }
+                if (firstFrame < 0) { throw new IllegalArgumentException(); }
+            }
+            else if (args[i].equals("--psnr")) {
+                if (i + 1 < args.length) { targetMse = QualityMetrics.mseOf(Double.parseDouble(args[++i])); }
+                else { throw new IllegalArgumentException(); }
+            }
+            else if (args[i].equals("--mse")) {
+                if (i + 1 < args.length) { targetMse = Double.parseDouble(args[++i]); }
+                else { throw new IllegalArgumentException(); }
+                if (!(targetMse >= 0)) { throw new IllegalArgumentException(); }
+            }
+            else if (args[i].equals("--leaves")) {
+                if (i + 1 < args.length) { targetLeaves = Integer.parseInt(args[++i]); }
+                else { throw new IllegalArgumentException(); }
+                if (targetLeaves <= 0) { throw new IllegalArgumentException(); }
+            }
+            else if (args[i].equals("--quality")) {
+                quality = true;
+            }
+            else if (args[i].equals("--heatmap")) {
+                heatmap = true;
+            }
+            else if (args[i].equals("--cache")) {
+                if (i + 1 < args.length) { cacheDirectory = args[++i]; }
+                else { throw new IllegalArgumentException(); }
+            }
+            else if (args[i].equals("--cache-size")) {
+                if (i + 1 < args.length) { cacheMegabytes = Long.parseLong(args[++i]); }
+                else { throw new IllegalArgumentException(); }
+                //megabytes are turned into bytes, which must fit in a long
+                if (cacheMegabytes < 0 || cacheMegabytes > Long.MAX_VALUE >> 20) { throw new IllegalArgumentException(); }
+            }
+            else if (args[i].equals("--metrics")) {
+                if (i + 1 < args.length) { metricsFile = args[++i]; }
+                else { throw new IllegalArgumentException(); }
+            }
+            else if (args[i].equals("-d")) {
+                if (i + 1 < args.length) { batchInput = args[++i]; }
+                else { throw new IllegalArgumentException(); }
+            }
+            else if (args[i].equals("-j")) {
+                if (i + 1 < args.length) { threads = Integer.parseInt(args[++i]); }
+                else { throw new IllegalArgumentException(); }
+                if (threads <= 0) { throw new IllegalArgumentException(); }
+            }
+            else if (args[i].equals("-f")) {
+                if (i + 1 < args.length) { format = args[++i].toUpperCase(); }
+                else { throw new IllegalArgumentException(); }
+                if (!format.equals("P3") && !format.equals("P5") && !format.equals("P6")) {
+                    throw new IllegalArgumentException();
                 }
-                else if (args[i].equals("-o")) {
-                    if (i + 1 < args.length) { outfileStub = args[++i]; }
-                    else { throw new IllegalArgumentException(); }
+            }
+            else { throw new IllegalArgumentException(); }
+        }
+
+        if (!batchInput.isEmpty()) {
+            if (!infile.isEmpty() || outfileStub.isEmpty() || firstFrame >= 0 || !metricsFile.isEmpty()) {
+                throw new IllegalArgumentException();
+            }
+            processBatch(batchInput, outfileStub, args, threads);
+            return;
+        }
+        if (verbose && metricsFile.equals("-")) {
+            //verbose lines printed ahead of the report would break the JSON
+            verbose = false;
+        }
+        if (verbose) {
+            System.out.println("Pixel kernels: " + PixelKernels.INSTANCE.name());
+        }
+        if ((writeTree && !compress) || (linear && (writeTree || parallel || leafBudget > 0 || bandPixels > 0))) {
+            throw new IllegalArgumentException();
+        }
+        boolean qualityTarget = targetMse >= 0 || targetLeaves > 0;
+        if (qualityTarget && (!compress || (targetMse >= 0 && targetLeaves > 0) || linear || leafBudget > 0
+                || bandPixels > 0 || firstFrame >= 0)) {
+            throw new IllegalArgumentException();
+        }
+        if ((quality || heatmap) && (!compress || writeTree || linear || bandPixels > 0 || firstFrame >= 0)) {
+            //only compressed images rendered in memory are measured
+            throw new IllegalArgumentException();
+        }
+        if (!cacheDirectory.isEmpty() && (linear || leafBudget > 0 || qualityTarget || bandPixels > 0 || firstFrame >= 0)) {
+            //only trees built by divideRegulated with ERRORTOLERANCE are cached
+            throw new IllegalArgumentException();
+        }
+        if (!metricsFile.isEmpty() && (linear || firstFrame >= 0 || bandPixels > 0)) {
+            //only the in-memory QuadTree path is measured
+            throw new IllegalArgumentException("--metrics does not cover -z, -s or -T");
+        }
+        if (firstFrame >= 0) {
+            if ((!compress && !edgeDetect && !blur) || linear || leafBudget > 0 || bandPixels > 0
+                    || infile.endsWith(QTCEXTENSION)) {
+                throw new IllegalArgumentException();
+            }
+            processSequence(infile, outfileStub, firstFrame, format, compress, edgeDetect, outlined,
+                    parallel, writeTree, levelOrder, verbose);
+            return;
+        }
+        if (bandPixels > 0) {
+            if ((!compress && !edgeDetect && !blur) || writeTree || leafBudget > 0 || infile.endsWith(QTCEXTENSION)) {
+                throw new IllegalArgumentException();
+            }
+            processTiled(infile, outfileStub, format, compress, edgeDetect, outlined, bandPixels);
+            return;
+        }
+
+        Metrics metrics = metricsFile.isEmpty() ? Metrics.disabled() : new Metrics(infile);
+        TreeCache cache = cacheDirectory.isEmpty() ? null : new TreeCache(cacheDirectory, cacheMegabytes << 20);
+        String fileKey = ""; //key of the input file in the cache, if it is an image rather than a .qtc file
+        QuadTree cachedTree = null; //tree of the input file found in the cache before the image is read
+        if (cache != null && !infile.endsWith(QTCEXTENSION)) {
+            Metrics.Phase lookup = metrics.begin("cache");
+            fileKey = TreeCache.fileKey(infile, compress ? maxCompressionLevel() : DEFAULTCOMPRESSION, ERRORTOLERANCE);
+            if (compress && !quality && !heatmap) {
+                //rendering the compression levels needs only the tree, so the image is not read
+                cachedTree = cache.getByFile(fileKey);
+                lookup.end().put("cache", cachedTree != null ? "hit" : "miss");
+            }
+            else {
+                lookup.end();
+            }
+        }
+        Raster originalImage = null; //null if the tree was found in the cache
+        if (cachedTree == null) {
+            Metrics.Phase load = metrics.begin("load");
+            if (infile.endsWith(QTCEXTENSION)) {
+                QtcReader reader = new QtcReader(infile, previewBytes);
+                originalImage = new Raster(reader.rows(), reader.columns());
+                reader.render(originalImage, previewDepth);
+                load.end().put("pixels", pixels(originalImage));
+                if (!compress && !edgeDetect && !blur) {
+                    //no filter given, so just decode the tree to an image
+                    String outFileName = outfileStub + extension(format);
+                    Metrics.Phase write = metrics.begin("write");
+                    WriteImg.writeImg(outFileName, originalImage, format);
+                    write.end().put("file", outFileName).put("pixels", pixels(originalImage));
+                    writeMetrics(metrics, metricsFile);
+                    return;
                 }
-                else if (args[i].equals("-c")) {
-                    compress = true;
+            }
+            else {
+                originalImage = WriteImg.createTwoD(infile, verbose);
+                load.end().put("pixels", pixels(originalImage));
+            }
+        }
+        Raster newImage = cachedTree != null ? new Raster(cachedTree.rows(), cachedTree.columns())
+                : new Raster(originalImage.rows(), originalImage.columns());
+
+        if (linear) {
+            processLinear(originalImage, outfileStub, format, compress, edgeDetect, blur, outlined);
+        }
+        else if (compress) {
+            //build the tree once at the highest level, and cut each level from it
+            Metrics.Phase build = metrics.begin("divide");
+            QuadTree[] compressionTrees;
+            if (qualityTarget) {
+                //a quality target gives the one tree meeting it, searched for within a single build
+                QuadTree fullTree = new QuadTree(originalImage);
+                QuadTree tree = targetLeaves > 0
+                        ? fullTree.divideToLeafBudget(originalImage, maxCompressionLevel(), targetLeaves)
+                        : fullTree.divideToMeanSquaredError(originalImage, maxCompressionLevel(), targetMse);
+                double mse = tree.meanSquaredError();
+                build.end().put("compressionLevel", maxCompressionLevel()).putTree(tree).put("pixels", pixels(originalImage))
+                        .put("maxAcceptableError", tree.maxAcceptableError()).put("mse", mse);
+                if (mse > 0) {
+                    build.put("psnr", QualityMetrics.psnr(mse));
                 }
-                else if (args[i].equals("-e")) {
-                    edgeDetect = true;
+                if (!metricsFile.equals("-")) {
+                    //the report's own copy of these values would break the JSON
+                    System.out.println(qualityReport(tree));
                 }
-                else if (args[i].equals("-x")) {
-                    blur = true;
+                compressionTrees = new QuadTree[] { tree };
+            }
+            else {
+                QuadTree fullTree = cachedTree != null ? cachedTree
+                        : buildTree(originalImage, maxCompressionLevel(), parallel, leafBudget, cache, fileKey, build);
+                build.end().put("compressionLevel", maxCompressionLevel()).putTree(fullTree).put("pixels", pixels(newImage));
+                if (leafBudget > 0) {
+                    //a leaf budget gives the one tree asked for instead of every level
+                    compressionTrees = new QuadTree[] { fullTree };
                 }
-                else if (args[i].equals("-t")) {
-                    outlined = true;
+                else {
+                    compressionTrees = new QuadTree[NUMCOMPRESSIONLEVELS];
+                    for (int i = 0; i < compressionTrees.length; i++) {
+                        Metrics.Phase level = metrics.begin("level");
+                        compressionTrees[i] = fullTree.atCompressionLevel(COMPRESSIONLEVELS[i]);
+                        level.end().put("level", i + 1).put("compressionLevel", COMPRESSIONLEVELS[i]).putTree(compressionTrees[i]);
+                    }
                 }
-                else { throw new IllegalArgumentException(); }
             }
-
-            Color[][] originalImage = WriteImg.createTwoD(infile);
-            Color[][] newImage = new Color[originalImage.length][originalImage[0].length];
-
-            if (compress) {
-                QuadTree[] compressionTrees = new QuadTree[NUMCOMPRESSIONLEVELS];
-                for (int i = 0; i < compressionTrees.length; i++) {
-                    compressionTrees[i] = new QuadTree(originalImage);
-                    compressionTrees[i].divideRegulated(originalImage, COMPRESSIONLEVELS[i], ERRORTOLERANCE);
+            for (int i = 0; i < compressionTrees.length; i++) {
+                if (writeTree) {
+                    String outFileName = outfileStub + "-" + (i+1) + QTCEXTENSION;
+                    Metrics.Phase write = metrics.begin("write");
+                    QtcWriter.write(outFileName, compressionTrees[i], levelOrder);
+                    write.end().put("level", i + 1).put("file", outFileName).put("nodes", compressionTrees[i].size());
+                    continue;
                 }
+                Metrics.Phase render = metrics.begin("render");
                 if (outlined) {
-                    for (int i = 0; i < compressionTrees.length; i++) {
-                        compressionTrees[i].quadCompressionOutlined(newImage);
-                        String outFileName = outfileStub + "-" + (i+1) + ".ppm";
-                        WriteImg.writeImg(outFileName, newImage);
-                    }
+                    compressionTrees[i].quadCompressionOutlined(newImage);
                 }
                 else {
-                    for (int i = 0; i < compressionTrees.length; i++) {
-                        compressionTrees[i].quadCompression(newImage);
-                        String outFileName = outfileStub + "-" + (i+1) + ".ppm";
-                        WriteImg.writeImg(outFileName, newImage);
+                    compressionTrees[i].quadCompression(newImage);
+                }
+                render.end().put("level", i + 1).put("pixels", pixels(newImage));
+                if (quality) {
+                    Metrics.Phase measure = metrics.begin("quality");
+                    QualityMetrics measured = QualityMetrics.measure(originalImage, newImage, parallel);
+                    measure.end().put("level", i + 1).put("mse", measured.mse()).put("ssim", measured.ssim());
+                    if (measured.mse() > 0) {
+                        measure.put("psnr", measured.psnr());
+                    }
+                    if (!metricsFile.equals("-")) {
+                        System.out.println("Level " + (i+1) + ": " + measured);
                     }
                 }
-            }
-            else if (edgeDetect) {
-                QuadTree edgeTree = new QuadTree(originalImage);
-                edgeTree.divideRegulated(originalImage, DEFAULTCOMPRESSION, ERRORTOLERANCE);
-                edgeTree.edgeDetector(originalImage, newImage);
-                if (outlined) {
-                    edgeTree.quadEdgeOutlined(newImage);
+                String outFileName = outfileStub + "-" + (i+1) + extension(format);
+                Metrics.Phase write = metrics.begin("write");
+                WriteImg.writeImg(outFileName, newImage, format);
+                write.end().put("level", i + 1).put("file", outFileName).put("pixels", pixels(newImage));
+                if (heatmap) {
+                    //heatmaps are in color, so a grayscale format is written as P6
+                    String heatFormat = format.equals("P5") ? "P6" : format;
+                    String heatFileName = outfileStub + "-" + (i+1) + "-heat" + extension(heatFormat);
+                    WriteImg.writeImg(heatFileName, QualityMetrics.heatmap(compressionTrees[i], originalImage, newImage), heatFormat);
                 }
-                WriteImg.writeImg(outfileStub + ".ppm", newImage);
             }
-            else if (blur) {
+        }
+        else if (edgeDetect || blur) {
+            if (!edgeDetect && !inBatch) {
+                //images of a batch run at once would all write this same file
                 WriteImg.writeImg("testing.ppm", originalImage);
-                QuadTree blurTree = new QuadTree(originalImage);
-                blurTree.divideRegulated(originalImage, DEFAULTCOMPRESSION, ERRORTOLERANCE);
-                blurTree.motionBlur(originalImage, newImage);
+            }
+            Metrics.Phase build = metrics.begin("divide");
+            QuadTree tree = buildTree(originalImage, DEFAULTCOMPRESSION, parallel, leafBudget, cache, fileKey, build);
+            build.end().put("compressionLevel", DEFAULTCOMPRESSION).putTree(tree).put("pixels", pixels(originalImage));
+            Metrics.Phase filter = metrics.begin("filter");
+            if (edgeDetect) {
+                tree.edgeDetector(originalImage, newImage);
+            }
+            else {
+                tree.motionBlur(originalImage, newImage);
+            }
+            if (outlined) {
+                tree.quadEdgeOutlined(newImage);
+            }
+            filter.end().put("filter", edgeDetect ? "edgeDetector" : "motionBlur").put("pixels", pixels(newImage));
+            String outFileName = outfileStub + extension(format);
+            Metrics.Phase write = metrics.begin("write");
+            WriteImg.writeImg(outFileName, newImage, format);
+            write.end().put("file", outFileName).put("pixels", pixels(newImage));
+        }
+        else {
+            throw new IllegalArgumentException();
+        }
+        writeMetrics(metrics, metricsFile);
+    }
+
+    /**
+     * Writes the metrics of a run, if they were asked for
+     * @param metrics phases of the run
+     * @param metricsFile file for the JSON report, "-" for standard output, or empty for none
+     * @throws IOException if an error occurs with the given filename
+     */
+    private static void writeMetrics(Metrics metrics, String metricsFile) throws IOException {
+        if (!metricsFile.isEmpty()) {
+            metrics.write(metricsFile);
+        }
+    }
+
+    /**
+     * Counts the pixels of an image
+     * @param image Raster of the image
+     * @return rows times columns
+     */
+    private static long pixels(Raster image) {
+        return (long) image.rows() * image.columns();
+    }
+
+    /**
+     * Processes an image with LinearQuadTrees, which hold their leaves in
+     * arrays rather than Nodes, giving the same output as QuadTrees
+     * @param originalImage image to be processed
+     * @param outfileStub name of the output files, without extension
+     * @param format output format, "P3", "P5" or "P6"
+     * @param compress true to write every compression level
+     * @param edgeDetect true to detect edges, if not compressing
+     * @param blur true to blur, if not compressing or detecting edges
+     * @param outlined true to outline the QuadTree nodes
+     * @throws IOException if an error occurs writing a file
+     */
+    private static void processLinear(Raster originalImage, String outfileStub, String format, boolean compress,
+            boolean edgeDetect, boolean blur, boolean outlined) throws IOException {
+        Raster newImage = new Raster(originalImage.rows(), originalImage.columns());
+        if (compress) {
+            for (int i = 0; i < NUMCOMPRESSIONLEVELS; i++) {
+                LinearQuadTree tree = LinearQuadTree.build(originalImage, COMPRESSIONLEVELS[i], ERRORTOLERANCE);
                 if (outlined) {
-                    blurTree.quadEdgeOutlined(newImage);
+                    tree.quadCompressionOutlined(newImage);
                 }
-                WriteImg.writeImg(outfileStub + ".ppm", newImage);
+                else {
+                    tree.quadCompression(newImage);
+                }
+                WriteImg.writeImg(outfileStub + "-" + (i+1) + extension(format), newImage, format);
+            }
+            return;
+        }
+        if (!edgeDetect && !blur) {
+            throw new IllegalArgumentException();
+        }
+        LinearQuadTree tree = LinearQuadTree.build(originalImage, DEFAULTCOMPRESSION, ERRORTOLERANCE);
+        if (edgeDetect) {
+            tree.edgeDetector(originalImage, newImage);
+        }
+        else {
+            tree.motionBlur(originalImage, newImage);
+        }
+        if (outlined) {
+            tree.quadEdgeOutlined(newImage);
+        }
+        WriteImg.writeImg(outfileStub + extension(format), newImage, format);
+    }
+
+    /**
+     * Processes an image without holding all of it in memory. The image is
+     * read once to total its channels over a grid of QuadTree Nodes, from
+     * which the top of the tree is built, then read again one band of rows
+     * at a time. Each band's subtrees are built, rendered, streamed to the
+     * output and discarded, giving the same output as the in-memory path.
+     * @param infile ppm file to be processed
+     * @param outfileStub name of the output files, without extension
+     * @param format output format, "P3", "P5" or "P6"
+     * @param compress true to write every compression level
+     * @param edgeDetect true to detect edges, if not compressing
+     * @param outlined true to outline the QuadTree nodes
+     * @param bandPixels most pixels to hold in one band
+     * @throws IOException if an error occurs reading or writing a file
+     * @throws IllegalArgumentException if the bands at MAXTILEDEPTH still hold more than bandPixels
+     */
+    private static void processTiled(String infile, String outfileStub, String format, boolean compress,
+            boolean edgeDetect, boolean outlined, long bandPixels) throws IOException {
+        TileGridStats grid;
+        int[] bands;
+        int depth;
+        try (PpmReader reader = new PpmReader(infile)) {
+            int rows = reader.rows();
+            int columns = reader.columns();
+            //use the shallowest depth whose bands fit in bandPixels
+            depth = 0;
+            bands = TileGridStats.bounds(rows, depth);
+            while (depth < MAXTILEDEPTH && maxBandHeight(bands) * (long) columns > bandPixels) {
+                depth++;
+                bands = TileGridStats.bounds(rows, depth);
+            }
+            long needed = maxBandHeight(bands) * (long) columns;
+            if (needed > bandPixels) {
+                //the grid of totals is never made deeper than MAXTILEDEPTH, so the bands cannot be cut thinner
+                throw new IllegalArgumentException("-T " + bandPixels + " is too small for this image, which needs "
+                        + needed + " pixels per band at depth " + MAXTILEDEPTH);
+            }
+            grid = new TileGridStats(rows, columns, depth);
+            for (int b = 0; b < bands.length - 1; b++) {
+                Raster band = new Raster(rows, columns, bands[b], bands[b + 1]);
+                reader.readRows(band, bands[b], bands[b + 1] - bands[b]);
+                grid.addRows(band, bands[b], bands[b + 1] - bands[b]);
+            }
+            grid.finish();
+        }
+
+        int rows = grid.rows();
+        int columns = grid.columns();
+        double compressionLevel = compress ? maxCompressionLevel() : DEFAULTCOMPRESSION;
+        QuadTree tree = new QuadTree(grid);
+        tree.divideTop(grid, compressionLevel, ERRORTOLERANCE, depth);
+
+        QuadTree[] views = compress ? new QuadTree[NUMCOMPRESSIONLEVELS] : new QuadTree[] { tree };
+        PpmWriter[] writers = new PpmWriter[views.length];
+        try (PpmReader reader = new PpmReader(infile)) {
+            for (int i = 0; i < views.length; i++) {
+                if (compress) {
+                    views[i] = tree.atCompressionLevel(COMPRESSIONLEVELS[i]);
+                    writers[i] = new PpmWriter(outfileStub + "-" + (i+1) + extension(format), format, rows, columns);
+                }
+                else {
+                    writers[i] = new PpmWriter(outfileStub + extension(format), format, rows, columns);
+                }
+            }
+
+            Raster previous = null;
+            for (int b = 0; b < bands.length - 1; b++) {
+                int start = bands[b];
+                int end = bands[b + 1];
+                //hold one row either side of the band for the edge and blur kernels
+                Raster source = new Raster(rows, columns, Math.max(start - 1, 0), Math.min(end + 1, rows));
+                int readFrom = source.firstRow();
+                if (previous != null) {
+                    readFrom = previous.endRow();
+                    System.arraycopy(previous.pixels(), previous.rowOffset(source.firstRow()), source.pixels(),
+                            source.rowOffset(source.firstRow()), (readFrom - source.firstRow()) * columns);
+                }
+                reader.readRows(source, readFrom, source.endRow() - readFrom);
+
+                tree.divideBand(source, start, end, compressionLevel, ERRORTOLERANCE);
+                Raster band = new Raster(rows, columns, start, end);
+                for (int i = 0; i < views.length; i++) {
+                    if (compress && outlined) {
+                        views[i].quadCompressionOutlined(band);
+                    }
+                    else if (compress) {
+                        views[i].quadCompression(band);
+                    }
+                    else {
+                        if (edgeDetect) {
+                            tree.edgeDetector(source, band);
+                        }
+                        else {
+                            tree.motionBlur(source, band);
+                        }
+                        if (outlined) {
+                            tree.quadEdgeOutlined(band);
+                        }
+                    }
+                    writers[i].writeRows(band, start, end - start);
+                }
+                tree.pruneBand(start, end);
+                previous = source;
+            }
+        }
+        finally {
+            for (PpmWriter writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Processes many images in one run, so that JVM startup and warm-up are
+     * paid once. At most threads images are processed, and so held in
+     * memory, at once: each image takes a permit before its task is
+     * submitted, so listing a large directory does not queue up work faster
+     * than it is done. Tasks run on virtual threads where the JVM has them,
+     * otherwise on a pool of threads threads. Each image is processed with
+     * the same arguments as the batch, its output named after it in the
+     * output directory, and a line is printed for each image and a summary at the end.
+     * Images whose names differ only in extension or directory would write
+     * the same output files, so only the first of them is processed and the
+     * others fail.
+     * @param batchInput directory whose .ppm and .qtc files are processed, or
+     * file listing one image per line
+     * @param outputDirectory directory to which the output files are written
+     * @param args command line arguments of the batch
+     * @param threads most images processed at once
+     * @throws IOException if the input cannot be listed or the output directory created
+     */
+    private static void processBatch(String batchInput, String outputDirectory, String[] args, int threads)
+            throws IOException {
+        List<String> infiles = new ArrayList<>();
+        Path input = Paths.get(batchInput);
+        if (Files.isDirectory(input)) {
+            try (DirectoryStream<Path> dir = Files.newDirectoryStream(input)) {
+                for (Path p : dir) {
+                    String name = p.getFileName().toString();
+                    if (name.endsWith(".ppm") || name.endsWith(".pgm") || name.endsWith(QTCEXTENSION)) {
+                        infiles.add(p.toString());
+                    }
+                }
+            }
+            Collections.sort(infiles);
+        }
+        else {
+            for (String line : Files.readAllLines(input)) {
+                if (!line.trim().isEmpty()) {
+                    infiles.add(line.trim());
+                }
+            }
+        }
+        Files.createDirectories(Paths.get(outputDirectory));
+
+        //the arguments given to every image, without the batch's own
+        List<String> common = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-d") || args[i].equals("-j") || args[i].equals("-o")) {
+                i++;
             }
             else {
-                throw new IllegalArgumentException();
+                common.add(args[i]);
             }
+        }
+
+        String[] results = new String[infiles.size()];
+        boolean[] failed = new boolean[infiles.size()];
+        Map<String, String> stubOwners = new HashMap<>(); //first input file given each output stub
+        Semaphore permits = new Semaphore(threads);
+        ExecutorService executor = newBatchExecutor(threads);
+        long startTime = System.nanoTime();
+        try {
+            for (int f = 0; f < infiles.size(); f++) {
+                final int index = f;
+                String infile = infiles.get(f);
+                String name = Paths.get(infile).getFileName().toString();
+                int dot = name.lastIndexOf('.');
+                String outfileStub = Paths.get(outputDirectory, dot > 0 ? name.substring(0, dot) : name).toString();
+                String owner = stubOwners.putIfAbsent(outfileStub, infile);
+                if (owner != null) {
+                    failed[index] = true;
+                    results[index] = "FAILED  " + infile + ": output " + outfileStub + " is already written for " + owner;
+                    continue;
+                }
+                List<String> fileArgs = new ArrayList<>(common);
+                Collections.addAll(fileArgs, "-i", infile, "-o", outfileStub);
+                permits.acquireUninterruptibly();
+                executor.execute(() -> {
+                    long fileStart = System.nanoTime();
+                    try {
+                        run(fileArgs.toArray(new String[0]), true);
+                        results[index] = String.format("OK      %s (%.3f s)", infile, (System.nanoTime() - fileStart) / 1e9);
+                    } 
+                    catch (Exception e) {
+                        failed[index] = true;
+                        results[index] = "FAILED  " + infile + ": " + failureMessage(e)
+                                + (e.getMessage() != null ? " (" + e.getMessage() + ")" : "");
+                    } 
+                    catch (OutOfMemoryError e) {
+                        failed[index] = true;
+                        results[index] = "FAILED  " + infile + ": out of memory";
+                    } 
+                    catch (Throwable e) {
+                        //any other error fails only this image, not the batch
+                        failed[index] = true;
+                        results[index] = "FAILED  " + infile + ": " + e;
+                    } 
+                    finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+        finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        int failures = 0;
+        for (int f = 0; f < results.length; f++) {
+            System.out.println(results[f]);
+            if (failed[f]) {
+                failures++;
+            }
+        }
+        System.out.printf("Processed %d images, %d failed, in %.3f s%n", results.length, failures,
+                (System.nanoTime() - startTime) / 1e9);
+    }
+
+    /**
+     * Creates the executor for a batch: one virtual thread per task if the
+     * JVM has them (JDK 21 or later), otherwise a fixed pool
+     * @param threads size of the fixed pool
+     * @return executor for the batch's tasks
+     */
+    private static ExecutorService newBatchExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
         } 
-        catch (FileNotFoundException e) {
-            System.out.println("File not found");
-        } 
-        catch (IllegalArgumentException e) {
-            System.out.println("Illegal or missing argument");
-        } 
-        catch (IOException e) {
-            System.out.println("Error with output file name");
+        catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(threads);
+        }
+    }
+
+    /**
+     * Processes a numbered sequence of frames, such as from a camera, in which
+     * consecutive frames are mostly the same. The first frame's QuadTree is
+     * built as usual; for each later frame, only the blocks of FRAMEBLOCK
+     * pixels which changed are passed to QuadTree.update, which splits or
+     * collapses Nodes only there. Each frame's output is the same as
+     * processing that frame alone. A frame of a different size is built
+     * from scratch. The sequence ends at the first missing frame.
+     * @param infilePattern name of the frames, with a format specifier such as %04d for the frame number
+     * @param outfilePattern name of the output files, without extension, with a format specifier for the frame number
+     * @param firstFrame number of the first frame
+     * @param format output format, "P3", "P5" or "P6"
+     * @param compress true to write every compression level of each frame
+     * @param edgeDetect true to detect edges, if not compressing, otherwise blur
+     * @param outlined true to outline the QuadTree nodes
+     * @param parallel true to build the first frame's tree in parallel
+     * @param writeTree true to write compressed levels as .qtc trees rather than images
+     * @param levelOrder true to write .qtc trees a level at a time
+     * @param verbose true to print how much of each frame changed
+     * @throws IOException if an error occurs reading or writing a file
+     */
+    private static void processSequence(String infilePattern, String outfilePattern, int firstFrame, String format,
+            boolean compress, boolean edgeDetect, boolean outlined, boolean parallel, boolean writeTree,
+            boolean levelOrder, boolean verbose) throws IOException {
+        double compressionLevel = compress ? maxCompressionLevel() : DEFAULTCOMPRESSION;
+        QuadTree tree = null;
+        Raster image = null; //current frame, kept up to date by tree.update
+        long changedBlocks = 0;
+        long totalBlocks = 0;
+        long revisitedNodes = 0;
+        long startTime = System.nanoTime();
+        int frame = firstFrame;
+        String infile = String.format(infilePattern, frame);
+        if (!Files.exists(Paths.get(infile))) {
+            throw new NoSuchFileException(infile);
+        }
+        while (Files.exists(Paths.get(infile))) {
+            Raster next = WriteImg.createTwoD(infile, false);
+            if (tree == null || next.rows() != image.rows() || next.columns() != image.columns()) {
+                image = next;
+                tree = new QuadTree(image);
+                divide(tree, image, compressionLevel, parallel, 0);
+            }
+            else {
+                int[] changed = updateFrame(tree, image, next);
+                int blocks = ((image.rows() + FRAMEBLOCK - 1) / FRAMEBLOCK) * ((image.columns() + FRAMEBLOCK - 1) / FRAMEBLOCK);
+                changedBlocks += changed[0];
+                totalBlocks += blocks;
+                revisitedNodes += changed[1];
+                if (verbose) {
+                    System.out.println("Frame " + frame + ": " + changed[0] + " of " + blocks + " blocks changed, "
+                            + changed[1] + " nodes revisited");
+                }
+            }
+
+            String outfileStub = String.format(outfilePattern, frame);
+            Raster newImage = new Raster(image.rows(), image.columns());
+            if (compress) {
+                for (int i = 0; i < NUMCOMPRESSIONLEVELS; i++) {
+                    QuadTree view = tree.atCompressionLevel(COMPRESSIONLEVELS[i]);
+                    if (writeTree) {
+                        QtcWriter.write(outfileStub + "-" + (i+1) + QTCEXTENSION, view, levelOrder);
+                        continue;
+                    }
+                    if (outlined) {
+                        view.quadCompressionOutlined(newImage);
+                    }
+                    else {
+                        view.quadCompression(newImage);
+                    }
+                    WriteImg.writeImg(outfileStub + "-" + (i+1) + extension(format), newImage, format);
+                }
+            }
+            else {
+                if (edgeDetect) {
+                    tree.edgeDetector(image, newImage);
+                }
+                else {
+                    tree.motionBlur(image, newImage);
+                }
+                if (outlined) {
+                    tree.quadEdgeOutlined(newImage);
+                }
+                WriteImg.writeImg(outfileStub + extension(format), newImage, format);
+            }
+            frame++;
+            infile = String.format(infilePattern, frame);
+        }
+        if (verbose) {
+            System.out.println("Frames: " + (frame - firstFrame) + ", blocks changed: " + changedBlocks + " of " + totalBlocks
+                    + ", nodes revisited: " + revisitedNodes + ", seconds: " + (System.nanoTime() - startTime) / 1e9);
+        }
+    }
+
+    /**
+     * Brings a QuadTree and its image up to date with the next frame. Each
+     * run of changed blocks in a row of blocks becomes one rectangle, and the
+     * tree is updated with all of a frame's rectangles at once.
+     * @param tree QuadTree built from image by divideRegulated
+     * @param image current frame, which is changed to match next
+     * @param next next frame, the same size as image
+     * @return number of blocks which changed, then number of Nodes revisited
+     */
+    private static int[] updateFrame(QuadTree tree, Raster image, Raster next) {
+        int rows = image.rows();
+        int columns = image.columns();
+        int[] pixels = image.pixels();
+        int[] nextPixels = next.pixels();
+        int changed = 0;
+        List<int[]> runs = new ArrayList<>(); //changed runs, as {startRow, startCol, endRow, endCol}
+        for (int startRow = 0; startRow < rows; startRow += FRAMEBLOCK) {
+            int endRow = Math.min(startRow + FRAMEBLOCK, rows);
+            int runStart = -1; //start column of the current run of changed blocks, or -1
+            for (int startCol = 0; startCol < columns + FRAMEBLOCK; startCol += FRAMEBLOCK) {
+                boolean dirty = false;
+                int endCol = Math.min(startCol + FRAMEBLOCK, columns);
+                for (int i = startRow; i < endRow && !dirty && startCol < columns; i++) {
+                    int offset = image.rowOffset(i);
+                    int nextOffset = next.rowOffset(i);
+                    dirty = !Arrays.equals(pixels, offset + startCol, offset + endCol,
+                            nextPixels, nextOffset + startCol, nextOffset + endCol);
+                }
+                if (dirty) {
+                    changed++;
+                    if (runStart < 0) {
+                        runStart = startCol;
+                    }
+                }
+                else if (runStart >= 0) {
+                    runs.add(new int[] {startRow, runStart, endRow, Math.min(startCol, columns)});
+                    runStart = -1;
+                }
+            }
+        }
+        int revisited = runs.isEmpty() ? 0 : tree.update(next, runs);
+        return new int[] {changed, revisited};
+    }
+
+    /**
+     * Finds the tallest band between a list of row boundaries
+     * @param bounds sorted row boundaries
+     * @return most rows between two consecutive boundaries
+     */
+    private static int maxBandHeight(int[] bounds) {
+        int height = 0;
+        for (int i = 0; i < bounds.length - 1; i++) {
+            height = Math.max(height, bounds[i + 1] - bounds[i]);
+        }
+        return height;
+    }
+
+    /**
+     * Finds the highest of COMPRESSIONLEVELS, the level at which a single
+     * tree holding every level is built
+     * @return highest compression level
+     */
+    private static double maxCompressionLevel() {
+        double maxCompression = COMPRESSIONLEVELS[0];
+        for (int i = 1; i < NUMCOMPRESSIONLEVELS; i++) {
+            maxCompression = Math.max(maxCompression, COMPRESSIONLEVELS[i]);
+        }
+        return maxCompression;
+    }
+
+    /**
+     * Describes the tree found for a quality target and the quality it reaches
+     * @param tree tree meeting the target
+     * @return the tree's error threshold, leaves, Nodes, mean squared error and PSNR
+     */
+    private static String qualityReport(QuadTree tree) {
+        double mse = tree.meanSquaredError();
+        return String.format("Error threshold %.4g: %d leaves, %d nodes, MSE %.4f, PSNR %s", tree.maxAcceptableError(),
+                tree.leafCount(), tree.size(), mse, mse > 0 ? String.format("%.2f dB", QualityMetrics.psnr(mse)) : "infinite");
+    }
+
+    /**
+     * Gives the file extension for an output format
+     * @param format "P3", "P5" or "P6"
+     * @return ".pgm" for grayscale P5, otherwise ".ppm"
+     */
+    private static String extension(String format) {
+        return format.equals("P5") ? ".pgm" : ".ppm";
+    }
+
+    /**
+     * Builds the QuadTree representation of an image, see divide, loading it
+     * from a tree cache instead if one is given and holds it. A tree built is
+     * stored in the cache, and the input file is recorded as holding it.
+     * @param image image to be stored in the tree
+     * @param compressionLevel maxium allowed number of nodes per thousand pixels
+     * @param parallel true to split large quadrants in parallel
+     * @param leafBudget if positive, most leaves of a best-first tree, which is never cached
+     * @param cache tree cache, or null for none
+     * @param fileKey key of the input file in the cache, or empty if it is not to be recorded
+     * @param build phase timing the build, told whether the cache held the tree
+     * @return the tree
+     * @throws IOException if an error occurs writing to the cache
+     */
+    private static QuadTree buildTree(Raster image, double compressionLevel, boolean parallel, int leafBudget,
+            TreeCache cache, String fileKey, Metrics.Phase build) throws IOException {
+        if (cache == null || leafBudget > 0) {
+            QuadTree tree = new QuadTree(image);
+            divide(tree, image, compressionLevel, parallel, leafBudget);
+            return tree;
+        }
+        String key = TreeCache.key(image, compressionLevel, ERRORTOLERANCE);
+        QuadTree tree = cache.get(key);
+        boolean hit = tree != null;
+        build.put("cache", hit ? "hit" : "miss");
+        if (!hit) {
+            tree = new QuadTree(image);
+            divide(tree, image, compressionLevel, parallel, leafBudget);
+            cache.put(key, tree);
+        }
+        if (!fileKey.isEmpty()) {
+            cache.putFile(fileKey, key);
+        }
+        if (!hit || !fileKey.isEmpty()) {
+            cache.evict();
+        }
+        return tree;
+    }
+
+    /**
+     * Divides a QuadTree representation of an image under ERRORTOLERANCE,
+     * on one thread or in parallel, or best-first up to a number of leaves
+     * @param tree QuadTree to be divided
+     * @param image image stored in the tree
+     * @param compressionLevel maxium allowed number of nodes per thousand pixels
+     * @param parallel true to split large quadrants in parallel
+     * @param leafBudget if positive, most leaves of a best-first tree, used instead of compressionLevel
+     */
+    private static void divide(QuadTree tree, Raster image, double compressionLevel, boolean parallel, int leafBudget) {
+        if (leafBudget > 0) {
+            tree.divideBestFirst(image, leafBudget, ERRORTOLERANCE);
+        }
+        else if (parallel) {
+            tree.divideRegulatedParallel(image, compressionLevel, ERRORTOLERANCE);
+        }
+        else {
+            tree.divideRegulated(image, compressionLevel, ERRORTOLERANCE);
         }
     }
 }
\ No newline at end of file
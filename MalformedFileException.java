@@ -0,0 +1,21 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: MalformedFileException.java
+ * Description: Class MalformedFileException is thrown when an input file is
+ * read but does not hold a valid image or tree, such as a file which is not
+ * a ppm or .qtc file or whose header or data is damaged, so that it can be
+ * told apart from a failure to write the output.
+ */
+
+import java.io.*;
+
+public class MalformedFileException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message description of what is wrong with the file
+     */
+    public MalformedFileException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: Metrics.java
+ * Description: Class Metrics records the phases of a run, such as loading,
+ * building trees, rendering, filtering and writing, and writes them as a JSON
+ * report. Each phase records its wall time and the bytes allocated during it,
+ * along with any counts given to it, such as nodes or pixels. Allocation is
+ * measured per thread, as each thread's bytes at the end of the phase less
+ * its bytes at the start, so work done in parallel is included. A thread
+ * which exits during a phase takes its count with it: its bytes are left
+ * out and the phase is marked "allocatedBytesPartial", and a thread which
+ * both starts and exits within a phase is not seen at all. Allocation is
+ * left out of the report if the JVM cannot measure it. A run not asked for
+ * a report uses the disabled Metrics, whose phases record nothing, so it
+ * does not pay for reading every thread's allocation at each phase.
+ */
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+public class Metrics {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final Metrics DISABLED = new Metrics(""); //Metrics of a run without a report
+    private static final Phase INERT = new Phase(); //phase handed out by DISABLED, which records nothing
+
+    private final String input; //file the run was given
+    private final long startTime; //System.nanoTime() when the run began
+    private final List<Phase> phases = new ArrayList<>(); //phases begun, in order
+
+    /**
+     * A timed phase of a run, with counts describing its work
+     */
+    public static class Phase {
+        private final String name; //kind of work, such as "load" or "render"
+        private final long startTime; //System.nanoTime() when the phase began
+        private final Map<Long, Long> startBytes; //bytes allocated by each live thread when the phase began, or null
+        private long wallNanos = -1; //length of the phase, or -1 while it runs
+        private long allocatedBytes = -1; //bytes allocated during the phase, or -1
+        private boolean partial; //true if a thread exited during the phase, so its bytes are missing
+        private final Map<String, Object> values = new LinkedHashMap<>(); //counts, in the order given
+
+        private Phase(String name) {
+            this.name = name;
+            startBytes = allocatedBytes();
+            startTime = System.nanoTime();
+        }
+
+        private Phase() {
+            name = "";
+            startBytes = null;
+            startTime = 0;
+        }
+
+        /**
+         * Ends the phase, recording its wall time and allocation
+         * @return this phase, so counts can be added after it
+         */
+        public Phase end() {
+            if (this == INERT) {
+                return this;
+            }
+            wallNanos = System.nanoTime() - startTime;
+            Map<Long, Long> endBytes = allocatedBytes();
+            if (startBytes != null && endBytes != null) {
+                allocatedBytes = 0;
+                for (Map.Entry<Long, Long> thread : endBytes.entrySet()) {
+                    //a thread started during the phase allocated all of its bytes in it
+                    allocatedBytes += thread.getValue() - startBytes.getOrDefault(thread.getKey(), 0L);
+                }
+                partial = !endBytes.keySet().containsAll(startBytes.keySet());
+            }
+            return this;
+        }
+
+        /**
+         * Adds a count or label to the phase
+         * @param key name of the value
+         * @param value a Number or String
+         * @return this phase
+         */
+        public Phase put(String key, Object value) {
+            if (this == INERT) {
+                return this;
+            }
+            values.put(key, value);
+            return this;
+        }
+
+        /**
+         * Adds the shape of a tree to the phase: its nodes, leaves and depth
+         * @param tree tree built or used by the phase
+         * @return this phase
+         */
+        public Phase putTree(QuadTree tree) {
+            if (this == INERT) {
+                return this;
+            }
+            return put("nodes", tree.size()).put("leaves", tree.leafCount()).put("maxDepth", tree.depth());
+        }
+    }
+
+    /**
+     * Starts recording a run
+     * @param input file the run was given
+     */
+    public Metrics(String input) {
+        this.input = input;
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * @return Metrics which record nothing, for a run without a report
+     */
+    public static Metrics disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Begins a phase, which is timed until its end method is called
+     * @param name kind of work, such as "load" or "render"
+     * @return the phase, which records nothing if these Metrics are disabled
+     */
+    public Phase begin(String name) {
+        if (this == DISABLED) {
+            return INERT;
+        }
+        Phase phase = new Phase(name);
+        phases.add(phase);
+        return phase;
+    }
+
+    /**
+     * Writes every phase as a JSON object:
+     * {"input": ..., "wallNanos": ..., "phases": [{"name": ..., "wallNanos": ...,
+     * "allocatedBytes": ..., "allocatedBytesPartial": true if a thread exited, and any counts}, ...]}
+     * @param fileName file to be written, or "-" for standard output
+     * @throws IOException if an error occurs with the given filename
+     */
+    public void write(String fileName) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"input\": ").append(quote(input));
+        json.append(",\n  \"wallNanos\": ").append(System.nanoTime() - startTime);
+        json.append(",\n  \"phases\": [");
+        for (int i = 0; i < phases.size(); i++) {
+            Phase phase = phases.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"name\": ").append(quote(phase.name));
+            json.append(", \"wallNanos\": ").append(phase.wallNanos);
+            if (phase.allocatedBytes >= 0) {
+                json.append(", \"allocatedBytes\": ").append(phase.allocatedBytes);
+                if (phase.partial) {
+                    json.append(", \"allocatedBytesPartial\": true");
+                }
+            }
+            for (Map.Entry<String, Object> value : phase.values.entrySet()) {
+                json.append(", ").append(quote(value.getKey())).append(": ");
+                if (value.getValue() instanceof Number) {
+                    json.append(value.getValue());
+                } else {
+                    json.append(quote(String.valueOf(value.getValue())));
+                }
+            }
+            json.append('}');
+        }
+        json.append("\n  ]\n}\n");
+        if (fileName.equals("-")) {
+            System.out.print(json);
+        } else {
+            try (Writer out = new BufferedWriter(new FileWriter(fileName))) {
+                out.write(json.toString());
+            }
+        }
+    }
+
+    /**
+     * Finds the bytes allocated so far by each live thread
+     * @return bytes of each thread by thread id, or null if the JVM cannot measure them
+     */
+    private static Map<Long, Long> allocatedBytes() {
+        if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            return null;
+        }
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = threads.getThreadAllocatedBytes(ids);
+        Map<Long, Long> allocated = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            //-1 for a thread which exited between the two calls
+            if (bytes[i] >= 0) {
+                allocated.put(ids[i], bytes[i]);
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * Writes a string as a JSON string literal
+     * @param s string to be quoted
+     * @return s in quotes, with quotes, backslashes and control characters escaped
+     */
+    private static String quote(String s) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
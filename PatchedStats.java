@@ -0,0 +1,304 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: PatchedStats.java
+ * Description: Class PatchedStats gives the channel totals of an image which
+ * has been edited since its SummedAreaTable was built. Each edit keeps small
+ * integral tables of how much it changed each channel over its own rectangle,
+ * which are added to the base table's totals, so an edit costs time in
+ * proportion to its size rather than the image's. Each edit is also listed
+ * in the cells of a coarse grid it overlaps, so finding a rectangle's totals
+ * only visits the edits near it. Once the edits' tables together hold as much
+ * as a quarter of the image, the base table is rebuilt and the edits dropped,
+ * so the rebuild's cost is spread over at least that much editing.
+ */
+
+import java.util.*;
+
+public class PatchedStats implements RegionStats {
+    private static final int MAXPATCHFRACTION = 4; //base table is rebuilt once patches cost 1/4 of the image
+    private static final int PATCHOVERHEAD = 64; //cost charged for each patch on top of its tables, so many tiny edits still add up
+    private static final int CELLSIZE = 64; //rows and columns of a cell of the grid patches are listed in
+    private static final int RED = 0; //channels of a patch's tables, for patchSum
+    private static final int GREEN = 1;
+    private static final int BLUE = 2;
+    private static final int SQUARES = 3;
+
+    private final Raster image; //image being edited, kept up to date
+    private SummedAreaTable base; //totals of the image as it was when last rebuilt
+    private final List<Patch> patches = new ArrayList<>(); //changes made since base was built
+    private final List<List<Patch>> cells = new ArrayList<>(); //patches overlapping each cell, a row of cells at a time
+    private final int cellColumns; //number of columns of cells
+    private long patchCost; //total size of the patches' tables plus their overhead
+    private int rebuilds; //number of times base has been rebuilt
+
+    /**
+     * Integral tables of the change an edit made to each channel over its rectangle
+     */
+    private static class Patch {
+        private final int startRow; //start row of the edit
+        private final int startCol; //start column of the edit
+        private final int endRow; //end row (exclusive) of the edit
+        private final int endCol; //end column (exclusive) of the edit
+        private final int stride; //width of a row in the tables, one more than the edit's columns
+        private final long[] red; //red[(i * stride) + j] is the change in red over the edit's first i rows and j columns
+        private final long[] green; //changes in green, laid out the same as red
+        private final long[] blue; //changes in blue, laid out the same as red
+        private final long[] squares; //changes in red^2 + green^2 + blue^2, laid out the same as red
+
+        private Patch(int startRow, int startCol, int endRow, int endCol) {
+            this.startRow = startRow;
+            this.startCol = startCol;
+            this.endRow = endRow;
+            this.endCol = endCol;
+            stride = endCol - startCol + 1;
+            int size = (endRow - startRow + 1) * stride;
+            red = new long[size];
+            green = new long[size];
+            blue = new long[size];
+            squares = new long[size];
+        }
+
+        /**
+         * @param channel RED, GREEN, BLUE or SQUARES
+         * @return this patch's table of changes in that channel
+         */
+        private long[] table(int channel) {
+            if (channel == RED) {
+                return red;
+            } else if (channel == GREEN) {
+                return green;
+            } else if (channel == BLUE) {
+                return blue;
+            }
+            return squares;
+        }
+
+        /**
+         * Finds the change over the part of a rectangle inside this edit
+         * @param table one of the tables of this patch
+         * @param startRow start row of the rectangle
+         * @param startCol start column of the rectangle
+         * @param endRow end row (exclusive) of the rectangle
+         * @param endCol end column (exclusive) of the rectangle
+         * @return total change, 0 if the rectangle misses the edit
+         */
+        private long sum(long[] table, int startRow, int startCol, int endRow, int endCol) {
+            int top = Math.max(startRow, this.startRow) - this.startRow;
+            int bottom = Math.min(endRow, this.endRow) - this.startRow;
+            int left = Math.max(startCol, this.startCol) - this.startCol;
+            int right = Math.min(endCol, this.endCol) - this.startCol;
+            if (top >= bottom || left >= right) {
+                return 0;
+            }
+            top *= stride;
+            bottom *= stride;
+            return table[bottom + right] - table[top + right] - table[bottom + left] + table[top + left];
+        }
+    }
+
+    /**
+     * Starts tracking edits to the image a SummedAreaTable was built from
+     * @param table totals of the image as it is now
+     */
+    public PatchedStats(SummedAreaTable table) {
+        image = table.image();
+        base = table;
+        cellColumns = (columns() + CELLSIZE - 1) / CELLSIZE;
+        int cellRows = (rows() + CELLSIZE - 1) / CELLSIZE;
+        for (int i = 0; i < cellRows * cellColumns; i++) {
+            cells.add(new ArrayList<>());
+        }
+    }
+
+    public Raster image() { return image; }
+
+    /**
+     * @return number of times the base table has been rebuilt since this was created
+     */
+    public int rebuilds() { return rebuilds; }
+
+    @Override
+    public int rows() { return image.rows(); }
+
+    @Override
+    public int columns() { return image.columns(); }
+
+    /**
+     * Copies new pixels into a rectangle of the image and records the change
+     * @param startRow row at which the new pixels start
+     * @param startCol column at which the new pixels start
+     * @param newPixels Raster holding the new pixels, whose pixel (i, j) replaces
+     * pixel (startRow + i, startCol + j) of the image
+     */
+    public void update(int startRow, int startCol, Raster newPixels) {
+        int[] rectangle = {startRow, startCol, startRow + newPixels.rows(), startCol + newPixels.columns()};
+        update(newPixels, startRow, startCol, Collections.singletonList(rectangle));
+    }
+
+    /**
+     * Copies several rectangles of new pixels into the image and records the
+     * changes, rebuilding the base table at most once for all of them
+     * @param source Raster the size of the image, whose pixels inside the
+     * rectangles replace the image's
+     * @param rectangles rectangles to be copied, each as {startRow, startCol,
+     * endRow, endCol} with the ends exclusive
+     */
+    public void update(Raster source, List<int[]> rectangles) {
+        update(source, 0, 0, rectangles);
+    }
+
+    /**
+     * Copies rectangles of new pixels into the image. If patching them would
+     * take the patches over their limit, the pixels are just copied and the
+     * base table rebuilt, as the patches would be dropped straight away.
+     * @param source Raster holding the new pixels
+     * @param sourceRow row of the image at which source's first row lies
+     * @param sourceCol column of the image at which source's first column lies
+     * @param rectangles rectangles of the image to be copied, each as
+     * {startRow, startCol, endRow, endCol} with the ends exclusive
+     */
+    private void update(Raster source, int sourceRow, int sourceCol, List<int[]> rectangles) {
+        long cost = patchCost;
+        for (int[] r : rectangles) {
+            cost += (long) (r[2] - r[0] + 1) * (r[3] - r[1] + 1) + PATCHOVERHEAD;
+        }
+        if (cost * MAXPATCHFRACTION > (long) rows() * columns()) {
+            for (int[] r : rectangles) {
+                for (int i = r[0]; i < r[2]; i++) {
+                    System.arraycopy(source.pixels(), source.rowOffset(i - sourceRow) + r[1] - sourceCol,
+                            image.pixels(), image.rowOffset(i) + r[1], r[3] - r[1]);
+                }
+            }
+            rebuild();
+            return;
+        }
+        for (int[] r : rectangles) {
+            patch(source, sourceRow, sourceCol, r[0], r[1], r[2], r[3]);
+        }
+    }
+
+    /**
+     * Copies a rectangle of new pixels into the image and keeps a patch of the change
+     * @param source Raster holding the new pixels
+     * @param sourceRow row of the image at which source's first row lies
+     * @param sourceCol column of the image at which source's first column lies
+     * @param startRow start row of the rectangle
+     * @param startCol start column of the rectangle
+     * @param endRow end row (exclusive) of the rectangle
+     * @param endCol end column (exclusive) of the rectangle
+     */
+    private void patch(Raster source, int sourceRow, int sourceCol, int startRow, int startCol, int endRow, int endCol) {
+        Patch patch = new Patch(startRow, startCol, endRow, endCol);
+        int[] pixels = image.pixels();
+        int[] newPixelArray = source.pixels();
+        for (int i = 0; i < endRow - startRow; i++) {
+            long redRow = 0;
+            long greenRow = 0;
+            long blueRow = 0;
+            long squaresRow = 0;
+            int above = i * patch.stride;
+            int here = above + patch.stride;
+            int offset = image.rowOffset(startRow + i) + startCol;
+            int newOffset = source.rowOffset(startRow + i - sourceRow) + startCol - sourceCol;
+            for (int j = 0; j < endCol - startCol; j++) {
+                int before = pixels[offset + j];
+                int after = newPixelArray[newOffset + j];
+                pixels[offset + j] = after;
+                int r0 = Raster.red(before);
+                int g0 = Raster.green(before);
+                int b0 = Raster.blue(before);
+                int r1 = Raster.red(after);
+                int g1 = Raster.green(after);
+                int b1 = Raster.blue(after);
+                redRow += r1 - r0;
+                greenRow += g1 - g0;
+                blueRow += b1 - b0;
+                squaresRow += (r1 * r1 + g1 * g1 + b1 * b1) - (r0 * r0 + g0 * g0 + b0 * b0);
+                patch.red[here + j + 1] = patch.red[above + j + 1] + redRow;
+                patch.green[here + j + 1] = patch.green[above + j + 1] + greenRow;
+                patch.blue[here + j + 1] = patch.blue[above + j + 1] + blueRow;
+                patch.squares[here + j + 1] = patch.squares[above + j + 1] + squaresRow;
+            }
+        }
+        patches.add(patch);
+        for (int i = startRow / CELLSIZE; i <= (endRow - 1) / CELLSIZE; i++) {
+            for (int j = startCol / CELLSIZE; j <= (endCol - 1) / CELLSIZE; j++) {
+                cells.get(i * cellColumns + j).add(patch);
+            }
+        }
+        patchCost += patch.red.length + PATCHOVERHEAD;
+    }
+
+    /**
+     * Builds the base table again from the image and drops the patches
+     */
+    private void rebuild() {
+        base = new SummedAreaTable(image);
+        patches.clear();
+        for (List<Patch> cell : cells) {
+            cell.clear();
+        }
+        patchCost = 0;
+        rebuilds++;
+    }
+
+    /**
+     * Finds the change the patches made to one channel over a rectangle,
+     * visiting only the cells the rectangle covers. A patch listed in several
+     * of those cells is counted in just one: the cell holding the top left
+     * corner of its overlap with the rectangle.
+     * @param channel RED, GREEN, BLUE or SQUARES, which of the patches' tables to use
+     * @param startRow start row of the rectangle
+     * @param startCol start column of the rectangle
+     * @param endRow end row (exclusive) of the rectangle
+     * @param endCol end column (exclusive) of the rectangle
+     * @return total change
+     */
+    private long patchSum(int channel, int startRow, int startCol, int endRow, int endCol) {
+        if (patches.isEmpty() || startRow >= endRow || startCol >= endCol) {
+            return 0;
+        }
+        int firstCellRow = startRow / CELLSIZE;
+        int lastCellRow = (endRow - 1) / CELLSIZE;
+        int firstCellCol = startCol / CELLSIZE;
+        int lastCellCol = (endCol - 1) / CELLSIZE;
+        long sum = 0;
+        if ((long) (lastCellRow - firstCellRow + 1) * (lastCellCol - firstCellCol + 1) >= patches.size()) {
+            //a rectangle covering more cells than there are patches is quicker to check against each patch
+            for (Patch p : patches) {
+                sum += p.sum(p.table(channel), startRow, startCol, endRow, endCol);
+            }
+            return sum;
+        }
+        for (int i = firstCellRow; i <= lastCellRow; i++) {
+            for (int j = firstCellCol; j <= lastCellCol; j++) {
+                for (Patch p : cells.get(i * cellColumns + j)) {
+                    if (Math.max(startRow, p.startRow) / CELLSIZE == i && Math.max(startCol, p.startCol) / CELLSIZE == j) {
+                        sum += p.sum(p.table(channel), startRow, startCol, endRow, endCol);
+                    }
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public long sumRed(int startRow, int startCol, int endRow, int endCol) {
+        return base.sumRed(startRow, startCol, endRow, endCol) + patchSum(RED, startRow, startCol, endRow, endCol);
+    }
+
+    @Override
+    public long sumGreen(int startRow, int startCol, int endRow, int endCol) {
+        return base.sumGreen(startRow, startCol, endRow, endCol) + patchSum(GREEN, startRow, startCol, endRow, endCol);
+    }
+
+    @Override
+    public long sumBlue(int startRow, int startCol, int endRow, int endCol) {
+        return base.sumBlue(startRow, startCol, endRow, endCol) + patchSum(BLUE, startRow, startCol, endRow, endCol);
+    }
+
+    @Override
+    public long sumSquares(int startRow, int startCol, int endRow, int endCol) {
+        return base.sumSquares(startRow, startCol, endRow, endCol) + patchSum(SQUARES, startRow, startCol, endRow, endCol);
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: PixelKernels.java
+ * Description: Interface PixelKernels holds the arithmetic of the point filters
+ * and of one row of a convolution, over spans of a packed pixel array. The
+ * implementation is chosen once at startup: VectorKernels when the
+ * jdk.incubator.vector module is present and the class was compiled, and
+ * ScalarKernels otherwise. Both give the same output for the same input.
+ */
+public interface PixelKernels {
+    /**
+     * Kernels used by Filter and Convolution
+     */
+    PixelKernels INSTANCE = select();
+
+    /**
+     * @return name of the implementation, "scalar" or "vector"
+     */
+    String name();
+
+    /**
+     * Replaces each pixel in a span with its negative
+     * @param pixels packed pixels
+     * @param from first index of the span
+     * @param to end index (exclusive) of the span
+     */
+    void negative(int[] pixels, int from, int to);
+
+    /**
+     * Replaces each pixel in a span with its gray level, see Filter.luminance
+     * @param pixels packed pixels
+     * @param from first index of the span
+     * @param to end index (exclusive) of the span
+     */
+    void grayscale(int[] pixels, int from, int to);
+
+    /**
+     * Scales each channel of each pixel in a span by tint / 255, rounding down,
+     * clamping each channel to 0-255 for tints outside that range
+     * @param pixels packed pixels
+     * @param from first index of the span
+     * @param to end index (exclusive) of the span
+     * @param red red value of the tint
+     * @param green green value of the tint
+     * @param blue blue value of the tint
+     */
+    void tint(int[] pixels, int from, int to, int red, int green, int blue);
+
+    /**
+     * Maps each channel of each pixel in a span through a lookup table. Each
+     * table holds the new value of its channel already shifted into place,
+     * so the new pixel is the three entries or'ed together.
+     * @param pixels packed pixels
+     * @param from first index of the span
+     * @param to end index (exclusive) of the span
+     * @param red 256 entries giving the new red bits for each red value
+     * @param green 256 entries giving the new green bits for each green value
+     * @param blue 256 entries giving the new blue bits for each blue value
+     */
+    void lookup(int[] pixels, int from, int to, int[] red, int[] green, int[] blue);
+
+    /**
+     * Convolves a span of pixels whose taps all lie inside the array. Each tap
+     * adds (sample * weight) >> shift to its channel's total, and the absolute
+     * value of each total, clamped to 255, is written.
+     * @param in packed pixels to be filtered
+     * @param inStart index in in of the first pixel of the span
+     * @param out packed pixels to hold the result
+     * @param outStart index in out of the first pixel of the span
+     * @param count number of pixels in the span
+     * @param offsets offset of each tap from the pixel it is applied to
+     * @param weights weight of each tap
+     * @param shifts right shift of each tap
+     */
+    void convolve(int[] in, int inStart, int[] out, int outStart, int count, int[] offsets, int[] weights, int[] shifts);
+
+    /**
+     * Picks the vector implementation when it can be loaded, unless the
+     * system property pixelkernels is set to "scalar"
+     * @return kernels to be used
+     */
+    private static PixelKernels select() {
+        if (!"scalar".equals(System.getProperty("pixelkernels"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (PixelKernels) Class.forName("VectorKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                //not compiled, or the module cannot be used; fall back below
+            }
+        }
+        return new ScalarKernels();
+    }
+}
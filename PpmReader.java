@@ -0,0 +1,261 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: PpmReader.java
+ * Description: Class PpmReader reads binary P6 (color) and P5 (grayscale) images,
+ * and plain P3 images, a band of rows at a time through windows of the file mapped
+ * into memory with FileChannel.map. P3 samples are tokenized byte by byte, so no
+ * image data passes through a Scanner or String.
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+public class PpmReader implements Closeable {
+    private static final long MAPWINDOW = 1 << 26; //bytes of the file mapped at a time
+    private static final int MAXVALUE = 255; //maximum channel value of a Raster
+
+    private final FileChannel channel; //channel to the image file
+    private final long fileSize; //size of the image file in bytes
+    private final String format; //magic number of the file, "P3", "P5" or "P6"
+    private final int columns; //number of columns in the image
+    private final int rows; //number of rows in the image
+    private final int maxValue; //maximum sample value given in the header
+    private final int channels; //samples per pixel, 3 for P3 and P6 and 1 for P5
+    private final int bytesPerSample; //1 if maxValue is under 256, otherwise 2
+    private final byte[] rowBytes; //raw samples of one row of a binary file
+
+    private MappedByteBuffer window; //currently mapped section of the file
+    private long windowStart; //file offset of the start of window
+    private long windowEnd; //file offset just past the end of window
+    private long position; //file offset of the next byte to be read
+    private int rowsRead; //number of rows read so far
+    private long readNanos; //time spent in readRows
+
+    /**
+     * Opens a ppm file and reads its header
+     * @param filename P3, P5 or P6 file to be read
+     * @throws IOException if the file cannot be read or is not P3, P5 or P6
+     */
+    public PpmReader(String filename) throws IOException {
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        fileSize = channel.size();
+        try {
+            map(0);
+            format = "" + (char) nextByte() + (char) nextByte();
+            if (format.equals("P6") || format.equals("P3")) {
+                channels = 3;
+            } else if (format.equals("P5")) {
+                channels = 1;
+            } else {
+                throw new MalformedFileException("Not a ppm file: " + filename);
+            }
+            columns = nextInt();
+            rows = nextInt();
+            maxValue = nextInt(); //also consumes the single whitespace before binary samples
+            if (columns <= 0 || rows <= 0 || maxValue <= 0 || maxValue > 65535) {
+                throw new MalformedFileException("Bad ppm header: " + filename);
+            }
+            bytesPerSample = maxValue > MAXVALUE ? 2 : 1;
+            rowBytes = format.equals("P3") ? null : new byte[columns * channels * bytesPerSample];
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public String format() { return format; }
+
+    public int rows() { return rows; }
+
+    public int columns() { return columns; }
+
+    public int maxValue() { return maxValue; }
+
+    /**
+     * Gives the rate at which pixels have been read so far
+     * @return pixels read per second of time spent in readRows
+     */
+    public double pixelsPerSecond() {
+        return readNanos == 0 ? 0 : (double) rowsRead * columns * 1e9 / readNanos;
+    }
+
+    /**
+     * Reads the next rows of the image into a Raster, scaling samples to 0-255
+     * @param image Raster to hold the rows
+     * @param firstRow row of image at which to store the first row read
+     * @param count number of rows to read
+     * @throws IOException if the file ends before the rows are read
+     */
+    public void readRows(Raster image, int firstRow, int count) throws IOException {
+        if (rowsRead + count > rows) {
+            throw new IllegalArgumentException("only " + (rows - rowsRead) + " rows left to read");
+        }
+        long start = System.nanoTime();
+        int[] pixels = image.pixels();
+        for (int i = firstRow; i < firstRow + count; i++) {
+            if (rowBytes == null) {
+                readTextRow(pixels, image.rowOffset(i));
+                continue;
+            }
+            readRowBytes();
+            int out = image.rowOffset(i);
+            if (bytesPerSample == 1 && maxValue == MAXVALUE) {
+                if (channels == 3) {
+                    for (int j = 0, k = 0; j < columns; j++, k += 3) {
+                        pixels[out + j] = ((rowBytes[k] & 0xFF) << 16) | ((rowBytes[k + 1] & 0xFF) << 8) | (rowBytes[k + 2] & 0xFF);
+                    }
+                } else {
+                    for (int j = 0; j < columns; j++) {
+                        int gray = rowBytes[j] & 0xFF;
+                        pixels[out + j] = (gray << 16) | (gray << 8) | gray;
+                    }
+                }
+            } else {
+                for (int j = 0, k = 0; j < columns; j++, k += channels) {
+                    int r = sample(k);
+                    int g = channels == 3 ? sample(k + 1) : r;
+                    int b = channels == 3 ? sample(k + 2) : r;
+                    pixels[out + j] = Raster.pack(r, g, b);
+                }
+            }
+        }
+        rowsRead += count;
+        readNanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Finds the value of a sample in the current row, scaled from 0-maxValue to 0-255
+     * @param index index of the sample in the row
+     * @return scaled sample value
+     */
+    private int sample(int index) {
+        int value;
+        if (bytesPerSample == 1) {
+            value = rowBytes[index] & 0xFF;
+        } else {
+            value = ((rowBytes[2 * index] & 0xFF) << 8) | (rowBytes[2 * index + 1] & 0xFF);
+        }
+        return scale(value);
+    }
+
+    /**
+     * Scales a sample from 0-maxValue to 0-255
+     * @param value sample value
+     * @return scaled sample value
+     */
+    private int scale(int value) {
+        return (value * MAXVALUE + maxValue / 2) / maxValue;
+    }
+
+    /**
+     * Parses one row of a P3 file straight into a pixel array
+     * @param pixels array to hold the row
+     * @param out index in pixels of the first pixel of the row
+     * @throws IOException if the file ends or holds something other than numbers
+     */
+    private void readTextRow(int[] pixels, int out) throws IOException {
+        for (int j = 0; j < columns; j++) {
+            int r = nextInt();
+            int g = nextInt();
+            int b = nextInt();
+            if (maxValue == MAXVALUE) {
+                pixels[out + j] = Raster.pack(r, g, b);
+            } else {
+                pixels[out + j] = Raster.pack(scale(r), scale(g), scale(b));
+            }
+        }
+    }
+
+    /**
+     * Copies the bytes of the next row into rowBytes, mapping the next
+     * window of the file whenever the row runs past the current one
+     * @throws IOException if the file ends before the row does
+     */
+    private void readRowBytes() throws IOException {
+        if (position + rowBytes.length > fileSize) {
+            throw new EOFException("ppm file ends before its last row");
+        }
+        if (position + rowBytes.length > windowEnd) {
+            map(position);
+        }
+        window.get((int) (position - windowStart), rowBytes);
+        position += rowBytes.length;
+    }
+
+    /**
+     * Maps the section of the file beginning at a given offset
+     * @param start file offset at which the window begins
+     * @throws IOException if the file cannot be mapped
+     */
+    private void map(long start) throws IOException {
+        long length = Math.min(Math.max(MAPWINDOW, rowBytes == null ? 0 : rowBytes.length), fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        windowStart = start;
+        windowEnd = start + length;
+    }
+
+    /**
+     * Reads a single byte, mapping the next window if needed
+     * @return the next byte of the file, or -1 at the end of the file
+     * @throws IOException if the file cannot be mapped
+     */
+    private int nextByte() throws IOException {
+        if (position >= windowEnd) {
+            if (position >= fileSize) {
+                return -1;
+            }
+            map(position);
+        }
+        return window.get((int) (position++ - windowStart)) & 0xFF;
+    }
+
+    /**
+     * Reads the next decimal number, skipping whitespace and '#' comments
+     * before it. The single byte ending the number is consumed, along with
+     * the rest of the line if that byte starts a comment.
+     * @return the number read
+     * @throws IOException if the file ends or the next token is not a number
+     */
+    private int nextInt() throws IOException {
+        int c = nextByte();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '#') {
+            if (c == '#') {
+                skipComment();
+            }
+            c = nextByte();
+        }
+        if (c == -1) {
+            throw new EOFException("ppm file ends before its last sample");
+        }
+        if (c < '0' || c > '9') {
+            throw new MalformedFileException("Bad ppm data at byte " + (position - 1));
+        }
+        int value = 0;
+        while (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            c = nextByte();
+        }
+        if (c == '#') {
+            skipComment();
+        }
+        return value;
+    }
+
+    /**
+     * Skips the rest of a '#' comment, up to and including the end of the line
+     * @throws IOException if the file cannot be mapped
+     */
+    private void skipComment() throws IOException {
+        int c = nextByte();
+        while (c != '\n' && c != '\r' && c != -1) {
+            c = nextByte();
+        }
+    }
+}
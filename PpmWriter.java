@@ -0,0 +1,158 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: PpmWriter.java
+ * Description: Class PpmWriter writes an image as a P3, P5 or P6 file a band of
+ * rows at a time. Samples are encoded straight into a direct ByteBuffer and
+ * written through a FileChannel, without formatting a String per pixel.
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+public class PpmWriter implements Closeable {
+    private static final int BUFFERSIZE = 1 << 20; //bytes buffered between writes
+    private static final int MAXPIXELBYTES = 12; //most bytes one P3 pixel can take, "255 255 255 "
+    private static final int COLORPIXELBYTES = 3; //bytes of one P6 pixel
+    private static final int PLAIN = 0; //P3, decimal color samples
+    private static final int GRAY = 1; //P5, binary gray samples
+    private static final int COLOR = 2; //P6, binary color samples
+
+    private final FileChannel channel; //channel to the output file
+    private final ByteBuffer buffer; //bytes waiting to be written
+    private final int kind; //PLAIN, GRAY or COLOR, found from the format once rather than per pixel
+    private final int columns; //number of columns in the image
+
+    /**
+     * Creates the output file and writes its header
+     * @param fileName file to be written
+     * @param format "P3", "P5" or "P6"
+     * @param rows number of rows in the image
+     * @param columns number of columns in the image
+     * @throws IOException if an error occurs with the given filename
+     */
+    public PpmWriter(String fileName, String format, int rows, int columns) throws IOException {
+        if (!format.equals("P3") && !format.equals("P5") && !format.equals("P6")) {
+            throw new IllegalArgumentException("Unknown ppm format " + format);
+        }
+        kind = format.equals("P6") ? COLOR : format.equals("P5") ? GRAY : PLAIN;
+        this.columns = columns;
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        buffer = ByteBuffer.allocateDirect(BUFFERSIZE);
+        //P3 keeps the blank line after the header that writeImg has always written
+        String header = format + "\n" + columns + " " + rows + "\n255\n" + (format.equals("P3") ? "\n" : "");
+        for (int i = 0; i < header.length(); i++) {
+            buffer.put((byte) header.charAt(i));
+        }
+    }
+
+    /**
+     * Writes rows of a Raster to the file
+     * @param image Raster holding the rows
+     * @param firstRow first row of image to be written
+     * @param count number of rows to be written
+     * @throws IOException if an error occurs writing the file
+     */
+    public void writeRows(Raster image, int firstRow, int count) throws IOException {
+        int[] pixels = image.pixels();
+        for (int i = firstRow; i < firstRow + count; i++) {
+            int rowStart = image.rowOffset(i);
+            if (kind == COLOR) {
+                writeColorRow(pixels, rowStart);
+            } else if (kind == GRAY) {
+                writeGrayRow(pixels, rowStart);
+            } else {
+                writePlainRow(pixels, rowStart);
+            }
+        }
+    }
+
+    /**
+     * Writes a row as binary P6 samples
+     * @param pixels packed pixels of the image
+     * @param rowStart index of the row's first pixel
+     * @throws IOException if an error occurs writing the file
+     */
+    private void writeColorRow(int[] pixels, int rowStart) throws IOException {
+        for (int j = 0; j < columns; j++) {
+            if (buffer.remaining() < COLORPIXELBYTES) {
+                flush();
+            }
+            int rgb = pixels[rowStart + j];
+            buffer.put((byte) Raster.red(rgb));
+            buffer.put((byte) Raster.green(rgb));
+            buffer.put((byte) Raster.blue(rgb));
+        }
+    }
+
+    /**
+     * Writes a row as binary P5 samples, the gray level of each pixel
+     * @param pixels packed pixels of the image
+     * @param rowStart index of the row's first pixel
+     * @throws IOException if an error occurs writing the file
+     */
+    private void writeGrayRow(int[] pixels, int rowStart) throws IOException {
+        for (int j = 0; j < columns; j++) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put((byte) Filter.luminance(pixels[rowStart + j]));
+        }
+    }
+
+    /**
+     * Writes a row as decimal P3 samples, ending in a newline
+     * @param pixels packed pixels of the image
+     * @param rowStart index of the row's first pixel
+     * @throws IOException if an error occurs writing the file
+     */
+    private void writePlainRow(int[] pixels, int rowStart) throws IOException {
+        for (int j = 0; j < columns; j++) {
+            if (buffer.remaining() < MAXPIXELBYTES + 1) {
+                flush();
+            }
+            int rgb = pixels[rowStart + j];
+            putDecimal(Raster.red(rgb));
+            putDecimal(Raster.green(rgb));
+            putDecimal(Raster.blue(rgb));
+        }
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put((byte) '\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes a channel value as decimal digits followed by a space
+     * @param value channel value, 0-255
+     */
+    private void putDecimal(int value) {
+        if (value >= 100) {
+            buffer.put((byte) ('0' + value / 100));
+            buffer.put((byte) ('0' + value / 10 % 10));
+        } else if (value >= 10) {
+            buffer.put((byte) ('0' + value / 10));
+        }
+        buffer.put((byte) ('0' + value % 10));
+        buffer.put((byte) ' ');
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
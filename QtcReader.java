@@ -0,0 +1,226 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: QtcReader.java
+ * Description: Class QtcReader reads a .qtc file written by QtcWriter, in either
+ * layout. The tree can be rebuilt as a QuadTree, or rendered into a Raster;
+ * pre-order files are rendered straight from the file without building any
+ * Nodes. Level-ordered files may be read only in part, up to a byte budget,
+ * and rendered down to a given depth, giving a coarser image.
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+public class QtcReader {
+    private final int rows; //number of rows in the image
+    private final int columns; //number of columns in the image
+    private final boolean levelOrder; //true for the level-ordered layout
+    private final ByteBuffer bits; //for pre-order, packed split bits, high bit first
+    private final int bitCount; //for pre-order, number of split bits in the file
+    private final ByteBuffer data; //leaf colors, or for level order every level's colors and split bits
+    private int nextBit; //index of the next split bit to be read
+
+    /**
+     * Reads a .qtc file into memory
+     * @param fileName file to be read
+     * @throws IOException if the file cannot be read or is not a .qtc file
+     */
+    public QtcReader(String fileName) throws IOException {
+        this(fileName, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads at most the first byteBudget bytes of a .qtc file into memory.
+     * Only a level-ordered file can be read in part.
+     * @param fileName file to be read
+     * @param byteBudget most bytes to be read
+     * @throws IOException if the file cannot be read or is not a .qtc file
+     * @throws IllegalArgumentException if a pre-order file is longer than byteBudget
+     */
+    public QtcReader(String fileName, long byteBudget) throws IOException {
+        ByteBuffer file;
+        long fileSize;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            fileSize = channel.size();
+            file = ByteBuffer.allocate((int) Math.min(channel.size(), Math.min(byteBudget, Integer.MAX_VALUE)));
+            while (file.hasRemaining()) {
+                if (channel.read(file) < 0) {
+                    break;
+                }
+            }
+            file.flip();
+        }
+        if (file.remaining() < 12) {
+            throw new EOFException(fileName + " ends before its header");
+        }
+        int magic = file.getInt();
+        if (magic != QtcWriter.MAGIC && magic != QtcWriter.LEVELMAGIC) {
+            throw new MalformedFileException(fileName + " is not a .qtc file");
+        }
+        levelOrder = magic == QtcWriter.LEVELMAGIC;
+        if (!levelOrder && byteBudget < fileSize) {
+            throw new IllegalArgumentException(fileName + " is pre-order, so it cannot be read in part");
+        }
+        rows = file.getInt();
+        columns = file.getInt();
+        if (rows < 0 || columns < 0) {
+            throw new MalformedFileException(fileName + " is not a .qtc file");
+        }
+        if (levelOrder) {
+            bits = null;
+            bitCount = 0;
+        } else {
+            if (file.remaining() < 4) {
+                throw new EOFException(fileName + " ends before its tree");
+            }
+            bitCount = file.getInt();
+            int bitBytes = (int) ((bitCount + 7L) / 8);
+            if (bitCount < 0 || bitBytes > file.remaining()) {
+                throw new EOFException(fileName + " ends before its tree");
+            }
+            bits = file.slice();
+            bits.limit(bitBytes);
+            file.position(file.position() + bitBytes);
+        }
+        data = file.slice();
+    }
+
+    /**
+     * Reads a whole tree from a file
+     * @param fileName file to be read
+     * @return tree held in the file
+     * @throws IOException if the file cannot be read or is not a .qtc file
+     */
+    public static QuadTree read(String fileName) throws IOException {
+        return QuadTree.decode(new QtcReader(fileName));
+    }
+
+    public int rows() { return rows; }
+
+    public int columns() { return columns; }
+
+    /**
+     * @return true if the file holds the level-ordered layout, false if pre-order
+     */
+    public boolean levelOrder() { return levelOrder; }
+
+    /**
+     * Reads whether the next Node in pre-order covering at least two pixels is split
+     * @return true if the Node has children, false if it is a leaf
+     * @throws EOFException if every split bit has been read
+     */
+    public boolean readSplit() throws EOFException {
+        if (nextBit >= bitCount) {
+            throw new EOFException("split bits ended early");
+        }
+        int b = bits.get(nextBit >>> 3) >>> (7 - (nextBit & 7));
+        nextBit++;
+        return (b & 1) != 0;
+    }
+
+    /**
+     * Determines whether the split bits of the next level are available,
+     * in the level-ordered layout
+     * @param count number of Nodes in the level covering at least two pixels
+     * @return true if the bits have been read into memory
+     */
+    public boolean hasSplits(int count) {
+        return data.remaining() >= (count + 7) / 8;
+    }
+
+    /**
+     * Reads the split bits of the next level, in the level-ordered layout
+     * @param count number of Nodes in the level covering at least two pixels
+     * @return whether each of those Nodes is split, in order
+     * @throws EOFException if the bits have not been read into memory
+     */
+    public boolean[] readSplits(int count) throws EOFException {
+        if (!hasSplits(count)) {
+            throw new EOFException("split bits ended early");
+        }
+        boolean[] splits = new boolean[count];
+        int b = 0;
+        for (int i = 0; i < count; i++) {
+            if ((i & 7) == 0) {
+                b = data.get();
+            }
+            splits[i] = (b & (0x80 >>> (i & 7))) != 0;
+        }
+        return splits;
+    }
+
+    /**
+     * @return true if the next color has been read into memory
+     */
+    public boolean hasColor() {
+        return data.remaining() >= 3;
+    }
+
+    /**
+     * Reads the color of the next leaf in pre-order, or of the next Node in
+     * level order, covering any pixels
+     * @return packed color of the Node
+     * @throws EOFException if every color has been read
+     */
+    public int readColor() throws EOFException {
+        if (!hasColor()) {
+            throw new EOFException("colors ended early");
+        }
+        int red = data.get() & 0xFF;
+        int green = data.get() & 0xFF;
+        int blue = data.get() & 0xFF;
+        return Raster.pack(red, green, blue);
+    }
+
+    /**
+     * Fills a Raster with the leaves of the tree, the same as quadCompression
+     * would on the rebuilt tree. Must be called before any other reads.
+     * @param image Raster to be filled, covering the whole image
+     * @throws EOFException if a pre-order file ends before the tree does
+     */
+    public void render(Raster image) throws EOFException {
+        render(image, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Fills a Raster with the tree cut at a given depth, or with as much of
+     * it as has been read for a level-ordered file read in part.
+     * Must be called before any other reads.
+     * @param image Raster to be filled, covering the whole image
+     * @param maxDepth depth at which Nodes are treated as leaves
+     * @throws EOFException if a pre-order file ends before the tree does
+     */
+    public void render(Raster image, int maxDepth) throws EOFException {
+        if (levelOrder || maxDepth != Integer.MAX_VALUE) {
+            QuadTree.decode(this, maxDepth).quadCompression(image);
+        } else {
+            render(image, 0, 0, rows, columns);
+        }
+    }
+
+    private void render(Raster image, int startRow, int startCol, int endRow, int endCol) throws EOFException {
+        int area = (endRow - startRow) * (endCol - startCol);
+        if (area < 1) {
+            return;
+        }
+        if (area >= 2 && readSplit()) {
+            int midRow = (endRow - startRow) / 2 + startRow;
+            int midCol = (endCol - startCol) / 2 + startCol;
+            render(image, startRow, startCol, midRow, midCol);
+            render(image, startRow, midCol, midRow, endCol);
+            render(image, midRow, startCol, endRow, midCol);
+            render(image, midRow, midCol, endRow, endCol);
+            return;
+        }
+        int rgb = readColor();
+        int[] pixels = image.pixels();
+        for (int i = startRow; i < endRow; i++) {
+            int offset = image.rowOffset(i);
+            for (int j = startCol; j < endCol; j++) {
+                pixels[offset + j] = rgb;
+            }
+        }
+    }
+}
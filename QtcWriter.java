@@ -0,0 +1,181 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: QtcWriter.java
+ * Description: Class QtcWriter writes a QuadTree as a .qtc file, which stores
+ * the tree itself rather than the image rendered from it. The file holds:
+ *   "QTC1", rows and columns as big-endian ints,
+ *   the number of split bits as an int, then the bits packed high bit first,
+ *   one per Node covering at least two pixels in pre-order (northwest,
+ *   northeast, southwest, southeast), 1 if the Node is split, 0 if a leaf,
+ *   then the red, green and blue bytes of each leaf covering any pixels, in pre-order.
+ * Nodes covering one pixel are always leaves and Nodes covering none hold no
+ * color, so neither needs to be stored. Colors of split Nodes are not stored
+ * and are found from their children by QtcReader.
+ * The level-ordered layout instead holds "QTCL", rows and columns, then each
+ * depth of the tree in turn: the colors of every Node at that depth covering
+ * any pixels, split or not, followed by their split bits padded to a byte.
+ * Any prefix of it describes a coarser tree, so a reader can stop early.
+ */
+
+import java.io.*;
+import java.util.*;
+
+public class QtcWriter implements Closeable {
+    public static final int MAGIC = 0x51544331; //"QTC1"
+    public static final int LEVELMAGIC = 0x5154434C; //"QTCL"
+
+    private final DataOutputStream out; //stream to the output file
+    private final int rows; //number of rows in the image
+    private final int columns; //number of columns in the image
+    private long[] bits = new long[16]; //split bits written so far, high bit first
+    private int bitCount; //number of split bits written
+    private byte[] colors = new byte[48]; //Node colors written so far
+    private int colorBytes; //number of bytes used in colors
+    private final boolean levelOrder; //true for the level-ordered layout
+    private int[] levelEnds = new int[8]; //for level order, bitCount and colorBytes at the end of each level
+    private int levels; //number of levels ended
+
+    /**
+     * Creates the output file. Nothing is written to it until close
+     * @param fileName file to be written
+     * @param rows number of rows in the image
+     * @param columns number of columns in the image
+     * @throws IOException if an error occurs with the given filename
+     */
+    public QtcWriter(String fileName, int rows, int columns) throws IOException {
+        this(fileName, rows, columns, false);
+    }
+
+    /**
+     * Creates the output file. Nothing is written to it until close
+     * @param fileName file to be written
+     * @param rows number of rows in the image
+     * @param columns number of columns in the image
+     * @param levelOrder true for the level-ordered layout, false for pre-order
+     * @throws IOException if an error occurs with the given filename
+     */
+    public QtcWriter(String fileName, int rows, int columns, boolean levelOrder) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+        this.rows = rows;
+        this.columns = columns;
+        this.levelOrder = levelOrder;
+    }
+
+    /**
+     * Writes a whole tree to a file in pre-order
+     * @param fileName file to be written
+     * @param tree tree to be written
+     * @throws IOException if an error occurs writing the file
+     */
+    public static void write(String fileName, QuadTree tree) throws IOException {
+        write(fileName, tree, false);
+    }
+
+    /**
+     * Writes a whole tree to a file
+     * @param fileName file to be written
+     * @param tree tree to be written
+     * @param levelOrder true for the level-ordered layout, false for pre-order
+     * @throws IOException if an error occurs writing the file
+     */
+    public static void write(String fileName, QuadTree tree, boolean levelOrder) throws IOException {
+        try (QtcWriter out = new QtcWriter(fileName, tree.rows(), tree.columns(), levelOrder)) {
+            tree.encode(out);
+        }
+    }
+
+    /**
+     * @return true if Nodes are to be written a level at a time, with every
+     * Node's color, false if in pre-order with only the leaves' colors
+     */
+    public boolean levelOrder() { return levelOrder; }
+
+    /**
+     * Records whether the next Node covering at least two pixels is split
+     * @param split true if the Node has children, false if it is a leaf
+     */
+    public void writeSplit(boolean split) {
+        if (bitCount == bits.length * 64) {
+            bits = Arrays.copyOf(bits, bits.length * 2);
+        }
+        if (split) {
+            bits[bitCount >>> 6] |= Long.MIN_VALUE >>> (bitCount & 63);
+        }
+        bitCount++;
+    }
+
+    /**
+     * Ends a level of the tree in the level-ordered layout. The colors and
+     * split bits written since the last level belong to this one.
+     */
+    public void endLevel() {
+        if (levels * 2 == levelEnds.length) {
+            levelEnds = Arrays.copyOf(levelEnds, levelEnds.length * 2);
+        }
+        levelEnds[2 * levels] = bitCount;
+        levelEnds[2 * levels + 1] = colorBytes;
+        levels++;
+    }
+
+    /**
+     * Records the color of the next leaf in pre-order, or of the next Node in level order
+     * @param rgb packed color of the Node
+     */
+    public void writeColor(int rgb) {
+        if (colorBytes + 3 > colors.length) {
+            colors = Arrays.copyOf(colors, colors.length * 2);
+        }
+        colors[colorBytes++] = (byte) Raster.red(rgb);
+        colors[colorBytes++] = (byte) Raster.green(rgb);
+        colors[colorBytes++] = (byte) Raster.blue(rgb);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (levelOrder) {
+                out.writeInt(LEVELMAGIC);
+                out.writeInt(rows);
+                out.writeInt(columns);
+                int bitStart = 0;
+                int colorStart = 0;
+                for (int level = 0; level < levels; level++) {
+                    int bitEnd = levelEnds[2 * level];
+                    int colorEnd = levelEnds[2 * level + 1];
+                    out.write(colors, colorStart, colorEnd - colorStart);
+                    writeBits(bitStart, bitEnd);
+                    bitStart = bitEnd;
+                    colorStart = colorEnd;
+                }
+            } else {
+                out.writeInt(MAGIC);
+                out.writeInt(rows);
+                out.writeInt(columns);
+                out.writeInt(bitCount);
+                writeBits(0, bitCount);
+                out.write(colors, 0, colorBytes);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes a range of the split bits, high bit first, padding the last byte with zeros
+     * @param start index of the first bit
+     * @param end index after the last bit
+     * @throws IOException if an error occurs writing the file
+     */
+    private void writeBits(int start, int end) throws IOException {
+        for (int i = start; i < end; i += 8) {
+            int b = 0;
+            for (int j = i; j < i + 8; j++) {
+                b <<= 1;
+                if (j < end && (bits[j >>> 6] & (Long.MIN_VALUE >>> (j & 63))) != 0) {
+                    b |= 1;
+                }
+            }
+            out.writeByte(b);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
 /**
  * Names: Reagan Buvens & Alison Teske
  * File name: QuadTree.java
@@ -12,34 +14,36 @@ import java.util.*;
 public class QuadTree {
     private Node root; //reference to root Node of tree
     private int size; //size of the tree
+    private Raster image; //image of the divideRegulated build, which update edits, or null
+    private int maxDepth; //depth at which Nodes are treated as leaves, for views cut from a deeper tree
+    private double errorCut; //error under which Nodes are treated as leaves, for views cut from a tree divided under a lower threshold
+    private int bandDepth; //depth of the Nodes left for divideBand by divideTop, or -1
+    private PatchedStats edits; //totals of the image as edited by update, built by the first update, or null
+    private boolean regulated; //true if the tree was built by divideRegulated, so update can keep it so
+    private double compressionLevel; //compression level of the divideRegulated build
+    private double maxAcceptableError; //error threshold of the divideRegulated build
 
     private static final int STARTIDX = 0; //start index of rows/cols
-    
-    //divison value for motion blur pixel
-    private static final int FOURTH = 4;
-    //divison value for adjacent pixel values
-    private static final int EIGTH = 8;
-    //division value for corner pixel values
-    private static final int SIXTEENTH = 16;
-
-    //weight given to center pixel in edge detection if in a corner of the image
-    private static final int CORNERPIXELWEIGHT = 3; 
-    //weight given to center pixel in edge detection if on the side of the image
-    private static final int SIDEPIXELWEIGHT = 5;
-    //weight given to center pixel in edge detection if not an edge case
-    private static final int MIDDLEPIXELWEIGHT = 8;
+    //Nodes with fewer pixels than this are divided sequentially in a parallel build
+    private static final int DEFAULTGRANULARITY = 1 << 14;
+    private static final int OUTLINE = 0xFF0000; //packed color of Node outlines
+    private static final int BLACK = 0; //packed color of leaves blacked out by edgeDetector
+    private static final int CHANNELS = 3; //color channels counted by meanSquaredError
+    private static final double BUDGETERROR = 5; //error threshold of the first tree built for a leaf budget
+    private static final double REFINEFACTOR = 2; //factor by which the error threshold is lowered while a target is out of reach
 
     private class Node {
         private Color data; //holds data for this Node
         private int depth; //holds depth of the Node relative to the root
-        private int startRow; //stores index of this Node's starting row in the Color[][]
-        private int endRow; //stores index of this Node's ending row in the Color[][]
-        private int startCol; //stores index of this Node's starting column in the Color[][]
-        private int endCol; //stores index of this Node's ending column in the Color[][]
+        private int startRow; //stores index of this Node's starting row in the Raster
+        private int endRow; //stores index of this Node's ending row in the Raster
+        private int startCol; //stores index of this Node's starting column in the Raster
+        private int endCol; //stores index of this Node's ending column in the Raster
         private Node northwest; //reference to northwest child of this Node
         private Node northeast; //reference to northeast child of this Node
         private Node southwest; //reference to southwest child of this Node
         private Node southeast; //reference to southeast child of this Node
+        private double error; //mean squared color distance of this Node's pixels from its average
 
         public Node(Color data, int depth, int startRow, int startCol, int endRow, int endCol) {
             this.data = data;
@@ -98,24 +102,395 @@ public class QuadTree {
         }
     }
 
-    public QuadTree(Color[][] image) {
-        root = new Node(findAverageColor(image, STARTIDX, STARTIDX, image.length, image[STARTIDX].length), 0, STARTIDX, STARTIDX, image.length, image[STARTIDX].length);
+    public QuadTree(Raster image) {
+        root = new Node(findAverageColor(image), 0, STARTIDX, STARTIDX, image.rows(), image.columns());
         size = 1;
+        maxDepth = Integer.MAX_VALUE;
+        bandDepth = -1;
+    }
+
+    /**
+     * Creates a QuadTree for an image which is not held in memory,
+     * from the channel totals of the image
+     * @param stats channel totals of the image, which must cover the whole image
+     */
+    public QuadTree(RegionStats stats) {
+        root = new Node(findAverageColor(stats, STARTIDX, STARTIDX, stats.rows(), stats.columns()), 0, STARTIDX, STARTIDX, stats.rows(), stats.columns());
+        size = 1;
+        maxDepth = Integer.MAX_VALUE;
+        bandDepth = -1;
+    }
+
+    /**
+     * Creates a view of a QuadTree which shares its Nodes but treats
+     * every Node at maxDepth as a leaf
+     * @param base tree whose Nodes are shared
+     * @param maxDepth depth at which Nodes are treated as leaves
+     */
+    private QuadTree(QuadTree base, int maxDepth) {
+        this(base, maxDepth, base.errorCut);
+    }
+
+    /**
+     * Creates a view of a QuadTree which shares its Nodes but treats
+     * every Node at maxDepth, or with an error under errorCut, as a leaf
+     * @param base tree whose Nodes are shared
+     * @param maxDepth depth at which Nodes are treated as leaves
+     * @param errorCut error under which Nodes are treated as leaves
+     */
+    private QuadTree(QuadTree base, int maxDepth, double errorCut) {
+        root = base.root;
+        this.maxDepth = maxDepth;
+        this.errorCut = errorCut;
+        bandDepth = base.bandDepth;
+        compressionLevel = base.compressionLevel;
+        maxAcceptableError = Math.max(base.maxAcceptableError, errorCut);
+        size = countNodes(root);
+    }
+
+    /**
+     * Creates an undivided QuadTree for an image with no colors yet, for decode
+     * @param rows number of rows in the image
+     * @param columns number of columns in the image
+     */
+    private QuadTree(int rows, int columns) {
+        root = new Node(null, 0, STARTIDX, STARTIDX, rows, columns);
+        size = 1;
+        maxDepth = Integer.MAX_VALUE;
+        bandDepth = -1;
     }
 
     public Color getRootValue() { return root.get(); }
 
+    public int rows() { return root.getEndRow(); }
+
+    public int columns() { return root.getEndCol(); }
+
     public int size() { return size; }
 
     public boolean isEmpty() { return size == 0; }
 
+    /**
+     * Returns the tree that divideRegulated would have built at a given
+     * compression level, as a view over this tree rather than a rebuild.
+     * This tree must have been divided with the same error threshold and a
+     * compression level at least as high as the one requested.
+     * @param compressionLevel maxium allowed number of nodes per thousand pixels
+     * @return view of this tree cut at the depth allowed by compressionLevel
+     */
+    public QuadTree atCompressionLevel(double compressionLevel) {
+        int maxLeaves = (int) (compressionLevel * root.getEndRow() * root.getEndCol());
+        int depth = 0;
+        while (Math.pow(4, depth) <= maxLeaves) {
+            depth++;
+        }
+        return new QuadTree(this, Math.min(depth, maxDepth));
+    }
+
+    /**
+     * Returns the tree that divideRegulated would have built under a given
+     * error threshold, as a view over this tree rather than a rebuild. This
+     * tree must have been divided with the same compression level and an
+     * error threshold no higher than the one requested, so that every Node
+     * the view splits is already split here.
+     * @param maxAcceptableError error threshold to hit or fall under for color difference
+     * @return view of this tree treating Nodes with an error under maxAcceptableError as leaves
+     */
+    public QuadTree atErrorThreshold(double maxAcceptableError) {
+        return new QuadTree(this, maxDepth, Math.max(errorCut, maxAcceptableError));
+    }
+
+    /**
+     * @return error threshold this tree was divided or cut under
+     */
+    public double maxAcceptableError() { return maxAcceptableError; }
+
+    /**
+     * Finds the mean squared error per color channel of the image drawn by
+     * quadCompression against the image this tree was divided from. Each
+     * leaf's squared error is recorded as the tree is divided, so no pixel
+     * is read; trees read from .qtc files hold no errors and give 0.
+     * @return sum of the squared channel differences over every pixel, divided by 3 times the pixels
+     */
+    public double meanSquaredError() {
+        return squaredError(root) / (CHANNELS * (double) rows() * columns());
+    }
+
+    private long squaredError(Node n) {
+        if (n == null) {
+            return 0;
+        }
+        if (isLeaf(n)) {
+            return squaredErrorOf(n);
+        }
+        return squaredError(n.northwest()) + squaredError(n.northeast()) + squaredError(n.southwest()) + squaredError(n.southeast());
+    }
+
+    /**
+     * @param n Node whose error has been recorded
+     * @return sum of the squared channel differences of n's pixels from its color
+     */
+    private static long squaredErrorOf(Node n) {
+        return Math.round(n.error * (n.getEndRow() - n.getStartRow()) * (n.getEndCol() - n.getStartCol()));
+    }
+
+    /**
+     * Divides this tree as divideRegulated would under the highest error
+     * threshold whose image has a mean squared error of at most the target,
+     * so the tree has as few Nodes as the target allows. The tree is built
+     * once, lowering its threshold only if the target is out of reach, and
+     * the threshold is then found by bisecting over the errors recorded in
+     * its Nodes. If no threshold meets the target within the compression
+     * level, the tree divided under the lowest threshold is given.
+     * @param image array of pixel color data to be compressed
+     * @param compressionLevel maxium allowed number of nodes per thousand pixels
+     * @param maxMeanSquaredError greatest mean squared error per color channel allowed
+     * @return view of this tree meeting the target, see maxAcceptableError for its threshold
+     */
+    public QuadTree divideToMeanSquaredError(Raster image, double compressionLevel, double maxMeanSquaredError) {
+        //leaves with errors under 3 * target over the 3 channels meet the target, unless the compression level stops them
+        double threshold = CHANNELS * maxMeanSquaredError;
+        RegionStats stats = new SummedAreaTable(image);
+        divideRegulated(image, stats, compressionLevel, threshold);
+        while (meanSquaredError() > maxMeanSquaredError && threshold > 0) {
+            threshold = threshold > 1 ? threshold / REFINEFACTOR : 0;
+            refine(stats, threshold);
+        }
+        return atMeanSquaredError(maxMeanSquaredError);
+    }
+
+    /**
+     * Divides this tree as divideRegulated would under the lowest error
+     * threshold giving at most a given number of leaves, so the image is as
+     * close to the original as the budget allows. The tree is grown from the
+     * root, lowering its threshold until it has more leaves than the budget,
+     * and the threshold is then found by bisecting over the errors recorded
+     * in its Nodes.
+     * @param image array of pixel color data to be compressed
+     * @param compressionLevel maxium allowed number of nodes per thousand pixels
+     * @param maxLeaves most leaves the tree may have, at least 1
+     * @return view of this tree meeting the budget, see maxAcceptableError for its threshold
+     */
+    public QuadTree divideToLeafBudget(Raster image, double compressionLevel, int maxLeaves) {
+        double threshold = Double.POSITIVE_INFINITY;
+        RegionStats stats = new SummedAreaTable(image);
+        divideRegulated(image, stats, compressionLevel, threshold);
+        while (leafCount() <= maxLeaves && threshold > 0) {
+            if (threshold > root.error) {
+                threshold = root.error;
+            } else {
+                threshold = threshold > 1 ? threshold / REFINEFACTOR : 0;
+            }
+            refine(stats, threshold);
+        }
+        return atLeafBudget(maxLeaves);
+    }
+
+    /**
+     * Finds the view of this tree under the highest error threshold whose
+     * mean squared error is at most the target, or this tree if none is
+     * @param maxMeanSquaredError greatest mean squared error per color channel allowed
+     * @return view of this tree, see atErrorThreshold
+     */
+    public QuadTree atMeanSquaredError(double maxMeanSquaredError) {
+        Splits splits = new Splits();
+        double maxSquaredError = maxMeanSquaredError * CHANNELS * rows() * columns();
+        int last = lastPassing(splits.thresholds, t -> splits.squaredError(t) <= maxSquaredError);
+        return last < 0 ? this : atErrorThreshold(splits.thresholds[last]);
+    }
+
+    /**
+     * Finds the view of this tree under the lowest error threshold giving
+     * at most a given number of leaves
+     * @param maxLeaves most leaves the view may have, at least 1
+     * @return view of this tree, see atErrorThreshold
+     */
+    public QuadTree atLeafBudget(int maxLeaves) {
+        if (maxLeaves < 1) {
+            throw new IllegalArgumentException("a tree has at least one leaf");
+        }
+        Splits splits = new Splits();
+        int last = lastPassing(splits.thresholds, t -> splits.leafCount(t) > maxLeaves);
+        return last < 0 ? this : atErrorThreshold(splits.thresholds[last + 1]);
+    }
+
+    /**
+     * The error statistics of the Nodes this tree splits, from which the
+     * leaves and squared error of any view under a higher threshold are
+     * found without visiting the tree. A view splits a Node if the Node and
+     * every Node above it have errors at or over its threshold, so each split
+     * Node is kept with the lowest error on its path from the root, along
+     * with the change in squared error made by splitting it.
+     */
+    private class Splits {
+        private final double[] pathErrors; //for each split Node, the lowest error from the root down to it
+        private final long[] changes; //for each split Node, the squared error of its children less its own
+        private final long rootError; //squared error of the root alone
+        private final double[] thresholds; //distinct pathErrors in increasing order, then one at which the root is a leaf
+        private int count; //split Nodes collected so far
+
+        private Splits() {
+            int splits = (size - 1) / 4;
+            pathErrors = new double[splits];
+            changes = new long[splits];
+            rootError = squaredErrorOf(root);
+            collect(root, Double.POSITIVE_INFINITY);
+            double[] sorted = Arrays.copyOf(pathErrors, count + 1);
+            sorted[count] = Math.nextUp(Math.max(root.error, errorCut));
+            Arrays.sort(sorted, 0, count);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] > sorted[distinct - 1]) {
+                    sorted[distinct++] = sorted[i];
+                }
+            }
+            thresholds = Arrays.copyOf(sorted, distinct);
+        }
+
+        private void collect(Node n, double pathError) {
+            if (n == null || isLeaf(n)) {
+                return;
+            }
+            pathError = Math.min(pathError, n.error);
+            pathErrors[count] = pathError;
+            changes[count] = squaredErrorOf(n.northwest()) + squaredErrorOf(n.northeast())
+                    + squaredErrorOf(n.southwest()) + squaredErrorOf(n.southeast()) - squaredErrorOf(n);
+            count++;
+            collect(n.northwest(), pathError);
+            collect(n.northeast(), pathError);
+            collect(n.southwest(), pathError);
+            collect(n.southeast(), pathError);
+        }
+
+        /**
+         * @param threshold error threshold of a view
+         * @return squared error of the view's image, see meanSquaredError
+         */
+        private long squaredError(double threshold) {
+            long total = rootError;
+            for (int i = 0; i < count; i++) {
+                if (pathErrors[i] >= threshold) {
+                    total += changes[i];
+                }
+            }
+            return total;
+        }
+
+        /**
+         * @param threshold error threshold of a view
+         * @return number of leaves of the view
+         */
+        private long leafCount(double threshold) {
+            long leaves = 1;
+            for (int i = 0; i < count; i++) {
+                if (pathErrors[i] >= threshold) {
+                    leaves += 3;
+                }
+            }
+            return leaves;
+        }
+    }
+
+    /**
+     * Bisects for the last of a list of thresholds passing a test which
+     * passes every threshold up to some point and none after it
+     * @param thresholds thresholds in increasing order
+     * @param passes test of a threshold
+     * @return index of the last threshold passing, or -1 if none does
+     */
+    private static int lastPassing(double[] thresholds, DoublePredicate passes) {
+        int low = -1;
+        int high = thresholds.length;
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (passes.test(thresholds[middle])) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Determines whether a Node is a leaf of this tree, either because it has
+     * no children or because this tree is a view cut off at the Node's depth
+     * or error
+     * @param n Node to be checked
+     * @return true if n is a leaf of this tree, false otherwise
+     */
+    private boolean isLeaf(Node n) {
+        return n.isLeaf() || n.depth() >= maxDepth || n.error < errorCut;
+    }
+
+    /**
+     * @return true if this tree is a view cut from another, so its Nodes
+     * are shared and must not be divided
+     */
+    private boolean isView() {
+        return maxDepth != Integer.MAX_VALUE || errorCut > 0;
+    }
+
+    /**
+     * Counts the Nodes of this tree below and including a given Node
+     * @param n Node at which to start counting
+     * @return number of Nodes in the subtree rooted at n
+     */
+    private int countNodes(Node n) {
+        if (n == null) {
+            return 0;
+        }
+        if (isLeaf(n)) {
+            return 1;
+        }
+        return 1 + countNodes(n.northwest()) + countNodes(n.northeast()) + countNodes(n.southwest()) + countNodes(n.southeast());
+    }
+
+    /**
+     * Counts the leaves of this tree, including any covering no pixels
+     * @return number of leaves
+     */
+    public int leafCount() { return countLeaves(root); }
+
+    private int countLeaves(Node n) {
+        if (n == null) {
+            return 0;
+        }
+        if (isLeaf(n)) {
+            return 1;
+        }
+        return countLeaves(n.northwest()) + countLeaves(n.northeast()) + countLeaves(n.southwest()) + countLeaves(n.southeast());
+    }
+
+    /**
+     * Finds the depth of the deepest leaf of this tree, the root being at depth 0
+     * @return greatest depth of any leaf
+     */
+    public int depth() { return depth(root); }
+
+    private int depth(Node n) {
+        if (n == null) {
+            return 0;
+        }
+        if (isLeaf(n)) {
+            return n.depth();
+        }
+        return Math.max(Math.max(depth(n.northwest()), depth(n.northeast())), Math.max(depth(n.southwest()), depth(n.southeast())));
+    }
+
     /**
      * Publically accessible method to divide a QuadTree representation
      * of an image down to the level of the pixel.
      * @param image to be stored in the tree
      */
-    public void divide(Color[][] image) {
-        divide(root, image);
+    public void divide(Raster image) {
+        if (isView()) {
+            throw new IllegalStateException("cannot divide a view of another QuadTree");
+        }
+        RegionStats stats = new SummedAreaTable(image);
+        recolorRoot(stats);
+        divide(root, stats);
+        unregulated();
     }
 
     /**
@@ -124,9 +499,9 @@ public class QuadTree {
      * average color of the section of the image, as well as
      * indices for the section of the image, in the Node.
      * @param n Node to be divided
-     * @param image to be stored in the tree
+     * @param stats channel totals of the image to be stored in the tree
      */
-    private void divide(Node n, Color[][] image) {
+    private void divide(Node n, RegionStats stats) {
         //if node is the size of a pixel or null, return
         if (n == null || (n.endCol - n.startCol) * (n.endRow - n.startRow) < 2) {
             return;
@@ -136,29 +511,29 @@ public class QuadTree {
         int NWEndRow = (n.endRow - n.startRow) / 2 + n.startRow;
         int NWStartCol = n.startCol;
         int NWEndCol = (n.endCol - n.startCol) / 2 + n.startCol;
-        n.setNorthwest(new Node(findAverageColor(image, NWStartRow, NWStartCol, NWEndRow, NWEndCol), n.depth() + 1, NWStartRow, NWStartCol, NWEndRow, NWEndCol));
-        divide(n.northwest, image);
+        n.setNorthwest(new Node(findAverageColor(stats, NWStartRow, NWStartCol, NWEndRow, NWEndCol), n.depth() + 1, NWStartRow, NWStartCol, NWEndRow, NWEndCol));
+        divide(n.northwest, stats);
 
         int NEStartRow = n.startRow;
         int NEEndRow = (n.endRow - n.startRow) / 2 + n.startRow;
         int NEStartCol = (n.endCol - n.startCol) / 2 + n.startCol;
         int NEEndCol = n.endCol;
-        n.setNortheast(new Node(findAverageColor(image, NEStartRow, NEStartCol, NEEndRow, NEEndCol), n.depth() + 1, NEStartRow, NEStartCol, NEEndRow, NEEndCol));
-        divide(n.northeast, image);
+        n.setNortheast(new Node(findAverageColor(stats, NEStartRow, NEStartCol, NEEndRow, NEEndCol), n.depth() + 1, NEStartRow, NEStartCol, NEEndRow, NEEndCol));
+        divide(n.northeast, stats);
 
         int SWStartRow = (n.endRow - n.startRow) / 2 + n.startRow;
         int SWEndRow = n.endRow;
         int SWStartCol = n.startCol;
         int SWEndCol = (n.endCol - n.startCol) / 2 + n.startCol;
-        n.setSouthwest(new Node(findAverageColor(image, SWStartRow, SWStartCol, SWEndRow, SWEndCol), n.depth() + 1, SWStartRow, SWStartCol, SWEndRow, SWEndCol));
-        divide(n.southwest, image);
+        n.setSouthwest(new Node(findAverageColor(stats, SWStartRow, SWStartCol, SWEndRow, SWEndCol), n.depth() + 1, SWStartRow, SWStartCol, SWEndRow, SWEndCol));
+        divide(n.southwest, stats);
 
         int SEStartRow = (n.endRow - n.startRow) / 2 + n.startRow;
         int SEEndRow = n.endRow;
         int SEStartCol = (n.endCol - n.startCol) / 2 + n.startCol;
         int SEEndCol = n.endCol;
-        n.setSoutheast(new Node(findAverageColor(image, SEStartRow, SEStartCol, SEEndRow, SEEndCol), n.depth() + 1, SEStartRow, SEStartCol, SEEndRow, SEEndCol));
-        divide(n.southeast, image);
+        n.setSoutheast(new Node(findAverageColor(stats, SEStartRow, SEStartCol, SEEndRow, SEEndCol), n.depth() + 1, SEStartRow, SEStartCol, SEEndRow, SEEndCol));
+        divide(n.southeast, stats);
         size += 4;
     }
 
@@ -170,100 +545,947 @@ public class QuadTree {
      * @param compressionLevel maxium allowed number of nodes per thousand pixels
      * @param maxAcceptableError error threshold to hit or fall under for color difference
      */
-    public void divideRegulated(Color[][] image, double compressionLevel, double maxAcceptableError) {
-        divideRegulated(root, image, compressionLevel, maxAcceptableError);
+    public void divideRegulated(Raster image, double compressionLevel, double maxAcceptableError) {
+        divideRegulated(image, new SummedAreaTable(image), compressionLevel, maxAcceptableError);
     }
 
     /**
-     * Public method to populate a quadTree with nodes down to 
-     * a certain compression or under a certain error threshold
-     * @param  n node to be populated with color data 
+     * Populates a quadTree the same way as divideRegulated, from the channel
+     * totals of the image, so a search may build its totals only once
      * @param image array of pixel color data to be compressed
+     * @param stats channel totals of image
      * @param compressionLevel maxium allowed number of nodes per thousand pixels
      * @param maxAcceptableError error threshold to hit or fall under for color difference
      */
-    private void divideRegulated(Node n, Color[][] image, double compressionLevel, double maxAcceptableError) {
+    private void divideRegulated(Raster image, RegionStats stats, double compressionLevel, double maxAcceptableError) {
+        if (isView()) {
+            throw new IllegalStateException("cannot divide a view of another QuadTree");
+        }
+        recolorRoot(stats);
+        size += divideRegulated(root, stats, compressionLevel, maxAcceptableError);
+        regulatedBy(image, compressionLevel, maxAcceptableError);
+    }
 
-        if (n == null || (n.getEndCol() - n.getStartCol()) * (n.getEndRow() - n.getStartRow()) < 2) {
-            return;
+    /**
+     * Public method to populate a quadTree the same way as divideRegulated,
+     * splitting the quadrants of large Nodes in parallel on the common ForkJoinPool
+     * @param image array of pixel color data to be compressed
+     * @param compressionLevel maxium allowed number of nodes per thousand pixels
+     * @param maxAcceptableError error threshold to hit or fall under for color difference
+     */
+    public void divideRegulatedParallel(Raster image, double compressionLevel, double maxAcceptableError) {
+        divideRegulatedParallel(image, compressionLevel, maxAcceptableError, DEFAULTGRANULARITY);
+    }
+
+    /**
+     * Public method to populate a quadTree the same way as divideRegulated,
+     * splitting the quadrants of large Nodes in parallel on the common ForkJoinPool
+     * @param image array of pixel color data to be compressed
+     * @param compressionLevel maxium allowed number of nodes per thousand pixels
+     * @param maxAcceptableError error threshold to hit or fall under for color difference
+     * @param granularity Nodes with fewer pixels than this are divided sequentially
+     */
+    public void divideRegulatedParallel(Raster image, double compressionLevel, double maxAcceptableError, int granularity) {
+        if (isView()) {
+            throw new IllegalStateException("cannot divide a view of another QuadTree");
+        }
+        RegionStats stats = new SummedAreaTable(image);
+        recolorRoot(stats);
+        DivideTask task = new DivideTask(root, stats, compressionLevel, maxAcceptableError, granularity);
+        ForkJoinPool.commonPool().invoke(task);
+        size += task.added;
+        regulatedBy(image, compressionLevel, maxAcceptableError);
+    }
+
+    /**
+     * Records the image and parameters of a divideRegulated build, which
+     * update reuses. The image's channel totals are not kept: update builds
+     * them again when it is first called.
+     * @param image array of pixel color data the tree was built from
+     * @param compressionLevel maxium allowed number of nodes per thousand pixels
+     * @param maxAcceptableError error threshold to hit or fall under for color difference
+     */
+    private void regulatedBy(Raster image, double compressionLevel, double maxAcceptableError) {
+        regulated = true;
+        this.image = image;
+        edits = null;
+        this.compressionLevel = compressionLevel;
+        this.maxAcceptableError = maxAcceptableError;
+    }
+
+    /**
+     * Finds the root's color again from the image being divided, whose
+     * pixels may have changed since the tree was created
+     * @param stats channel totals of the image
+     */
+    private void recolorRoot(RegionStats stats) {
+        root.set(findAverageColor(stats, STARTIDX, STARTIDX, rows(), columns()));
+    }
+
+    /**
+     * Records that the tree was not built by divideRegulated, so it cannot
+     * be updated, and drops the image and totals kept for update
+     */
+    private void unregulated() {
+        regulated = false;
+        image = null;
+        edits = null;
+    }
+
+    /**
+     * Divides a tree built by divideRegulated further under a lower error
+     * threshold, giving the same tree as dividing it afresh. Every Node
+     * already split has an error at or over the old threshold, so it stays
+     * split, and only the leaves are revisited.
+     * @param image array of pixel color data the tree was built from
+     * @param maxAcceptableError new error threshold, no higher than the old one
+     */
+    public void refine(Raster image, double maxAcceptableError) {
+        refine(new SummedAreaTable(image), maxAcceptableError);
+    }
+
+    /**
+     * Divides a tree built by divideRegulated further, see refine, from the
+     * channel totals of the image it was built from
+     * @param stats channel totals of the image
+     * @param maxAcceptableError new error threshold, no higher than the old one
+     */
+    private void refine(RegionStats stats, double maxAcceptableError) {
+        if (isView()) {
+            throw new IllegalStateException("cannot refine a view of another QuadTree");
+        }
+        if (!regulated) {
+            throw new IllegalStateException("only a tree built by divideRegulated can be refined");
         }
+        if (maxAcceptableError > this.maxAcceptableError) {
+            throw new IllegalArgumentException("refine cannot raise the error threshold");
+        }
+        size += refine(root, stats, maxAcceptableError);
+        this.maxAcceptableError = maxAcceptableError;
+    }
+
+    private int refine(Node n, RegionStats stats, double maxAcceptableError) {
+        if (n.isLeaf()) {
+            return divideRegulated(n, stats, compressionLevel, maxAcceptableError);
+        }
+        return refine(n.northwest(), stats, maxAcceptableError) + refine(n.northeast(), stats, maxAcceptableError)
+                + refine(n.southwest(), stats, maxAcceptableError) + refine(n.southeast(), stats, maxAcceptableError);
+    }
+
+    /**
+     * Replaces a rectangle of the image this tree was built from and brings
+     * the tree up to date, giving the same tree as rebuilding it with
+     * divideRegulated. Only Nodes overlapping the rectangle are revisited:
+     * their colors and errors are found again, and each is split further or
+     * has its children removed as divideRegulated would now decide. The
+     * image's channel totals are patched rather than rebuilt, so the cost
+     * follows the size of the rectangle and of the Nodes changed.
+     * The image held by the caller is edited as well, and must not have
+     * been changed since the tree was built other than through update.
+     * @param startRow row at which the new pixels start
+     * @param startCol column at which the new pixels start
+     * @param newPixels Raster holding the new pixels, whose pixel (i, j) replaces
+     * pixel (startRow + i, startCol + j) of the image
+     */
+    public void update(int startRow, int startCol, Raster newPixels) {
+        checkUpdatable();
+        int[] rectangle = {startRow, startCol, startRow + newPixels.rows(), startCol + newPixels.columns()};
+        checkRectangle(rectangle);
+        edits.update(startRow, startCol, newPixels);
+        update(Collections.singletonList(rectangle));
+    }
+
+    /**
+     * Replaces several rectangles of the image this tree was built from and
+     * brings the tree up to date, as update does for one. The channel totals
+     * are patched for all of them at once and the tree walked once, so a
+     * Node overlapping several rectangles is revisited only once.
+     * @param source Raster the size of the image, whose pixels inside the
+     * rectangles replace the image's
+     * @param rectangles rectangles to be replaced, each as {startRow, startCol,
+     * endRow, endCol} with the ends exclusive
+     * @return number of Nodes revisited
+     */
+    public int update(Raster source, List<int[]> rectangles) {
+        checkUpdatable();
+        if (source.rows() != rows() || source.columns() != columns()) {
+            throw new IllegalArgumentException("new pixels are not the size of the image");
+        }
+        for (int[] r : rectangles) {
+            checkRectangle(r);
+        }
+        edits.update(source, rectangles);
+        return update(rectangles);
+    }
 
-        Color average = findAverageColor(image, n.getStartRow(), n.getStartCol(), n.getEndRow(), n.getEndCol());
-        double colorDistance = 0;
-        for (int i = n.getStartRow(); i < n.getEndRow(); i++) {
-            for (int j = n.getStartCol(); j < n.getEndCol(); j++) {
-                colorDistance += (Math.pow((image[i][j].getRed() - average.getRed()), 2) + Math.pow((image[i][j].getGreen() - average.getGreen()), 2) + Math.pow((image[i][j].getBlue() - average.getBlue()), 2));
+    /**
+     * Checks that this tree can be updated, and builds the totals update
+     * patches if this is the first update
+     */
+    private void checkUpdatable() {
+        if (isView()) {
+            throw new IllegalStateException("cannot update a view of another QuadTree");
+        }
+        if (!regulated) {
+            throw new IllegalStateException("only a tree built by divideRegulated can be updated");
+        }
+        if (edits == null) {
+            edits = new PatchedStats(new SummedAreaTable(image));
+        }
+    }
+
+    /**
+     * @param rectangle rectangle as {startRow, startCol, endRow, endCol}
+     */
+    private void checkRectangle(int[] rectangle) {
+        if (rectangle[0] < STARTIDX || rectangle[1] < STARTIDX || rectangle[2] > rows() || rectangle[3] > columns()) {
+            throw new IllegalArgumentException("new pixels do not fit inside the image");
+        }
+    }
+
+    /**
+     * Brings the tree up to date with edited rectangles whose totals have been patched
+     * @param rectangles edited rectangles
+     * @return number of Nodes revisited
+     */
+    private int update(List<int[]> rectangles) {
+        int[] revisited = new int[1];
+        size += update(root, edits, rectangles, revisited);
+        return revisited[0];
+    }
+
+    /**
+     * Brings the subtree rooted at a Node up to date with edited rectangles
+     * @param n Node to be checked
+     * @param stats channel totals of the edited image
+     * @param rectangles edited rectangles, each as {startRow, startCol, endRow, endCol}
+     * @param revisited one-element count of the Nodes revisited, added to
+     * @return change in the number of Nodes below n
+     */
+    private int update(Node n, RegionStats stats, List<int[]> rectangles, int[] revisited) {
+        if (n == null) {
+            return 0;
+        }
+        List<int[]> overlapping = new ArrayList<>();
+        for (int[] r : rectangles) {
+            if (Math.min(r[2], n.getEndRow()) > Math.max(r[0], n.getStartRow())
+                    && Math.min(r[3], n.getEndCol()) > Math.max(r[1], n.getStartCol())) {
+                overlapping.add(r);
             }
         }
-        double error = Math.abs(colorDistance/((n.getEndRow() - n.getStartCol())*(n.getEndRow()- n.getStartRow())));
+        if (overlapping.isEmpty()) {
+            return 0;
+        }
+        revisited[0]++;
+        n.set(findAverageColor(stats, n.getStartRow(), n.getStartCol(), n.getEndRow(), n.getEndCol()));
+        if (n.isLeaf()) {
+            return divideRegulated(n, stats, compressionLevel, maxAcceptableError);
+        }
+        if (!shouldDivide(n, stats, compressionLevel, maxAcceptableError)) {
+            int removed = countNodes(n) - 1;
+            n.setNorthwest(null);
+            n.setNortheast(null);
+            n.setSouthwest(null);
+            n.setSoutheast(null);
+            return -removed;
+        }
+        return update(n.northwest(), stats, overlapping, revisited)
+                + update(n.northeast(), stats, overlapping, revisited)
+                + update(n.southwest(), stats, overlapping, revisited)
+                + update(n.southeast(), stats, overlapping, revisited);
+    }
 
-        int maxLeaves = (int) (compressionLevel * image.length * image[0].length);
-        
-        if (Math.pow(4, n.depth()) > maxLeaves) {
+    /**
+     * Public method to populate a quadTree by always splitting the leaf with
+     * the highest error, until the tree has as many leaves as allowed or every
+     * leaf that could be split has an error under the threshold. Each split
+     * turns one leaf into four, so the tree ends with between maxLeaves - 2
+     * and maxLeaves leaves unless it runs out of leaves worth splitting.
+     * @param image array of pixel color data to be compressed
+     * @param maxLeaves most leaves the tree may have
+     * @param maxAcceptableError error threshold to hit or fall under for color difference
+     */
+    public void divideBestFirst(Raster image, int maxLeaves, double maxAcceptableError) {
+        if (isView()) {
+            throw new IllegalStateException("cannot divide a view of another QuadTree");
+        }
+        RegionStats stats = new SummedAreaTable(image);
+        recolorRoot(stats);
+        unregulated();
+        PriorityQueue<Node> queue = new PriorityQueue<>((a, b) -> Double.compare(b.error, a.error));
+        List<Node> leaves = new ArrayList<>();
+        collectLeaves(root, leaves);
+        for (Node n : leaves) {
+            offer(queue, n, stats, maxAcceptableError);
+        }
+        int leafCount = leaves.size();
+        while (!queue.isEmpty() && leafCount + 3 <= maxLeaves) {
+            Node n = queue.poll();
+            split(n, stats);
+            size += 4;
+            leafCount += 3;
+            offer(queue, n.northwest(), stats, maxAcceptableError);
+            offer(queue, n.northeast(), stats, maxAcceptableError);
+            offer(queue, n.southwest(), stats, maxAcceptableError);
+            offer(queue, n.southeast(), stats, maxAcceptableError);
+        }
+    }
+
+    /**
+     * Records the error of a leaf and queues it for splitting if it covers
+     * more than one pixel and its error is not under the threshold
+     * @param queue leaves waiting to be split, highest error first
+     * @param n leaf to be checked
+     * @param stats channel totals of the image to be compressed
+     * @param maxAcceptableError error threshold to hit or fall under for color difference
+     */
+    private void offer(PriorityQueue<Node> queue, Node n, RegionStats stats, double maxAcceptableError) {
+        if ((n.getEndCol() - n.getStartCol()) * (n.getEndRow() - n.getStartRow()) < 2) {
             return;
         }
+        if (recordError(n, stats) >= maxAcceptableError) {
+            queue.add(n);
+        }
+    }
 
-        if ( error < maxAcceptableError) {
+    /**
+     * Adds the leaves below and including a Node to a list
+     * @param n Node at which to start
+     * @param leaves list to be added to
+     */
+    private void collectLeaves(Node n, List<Node> leaves) {
+        if (n == null) {
+            return;
+        }
+        if (isLeaf(n)) {
+            leaves.add(n);
             return;
         }
+        collectLeaves(n.northwest(), leaves);
+        collectLeaves(n.northeast(), leaves);
+        collectLeaves(n.southwest(), leaves);
+        collectLeaves(n.southeast(), leaves);
+    }
 
-        int NWStartRow = n.startRow;
-        int NWEndRow = (n.endRow - n.startRow) / 2 + n.startRow;
-        int NWStartCol = n.startCol;
-        int NWEndCol = (n.endCol - n.startCol) / 2 + n.startCol;
-        n.setNorthwest(new Node(findAverageColor(image, NWStartRow, NWStartCol, NWEndRow, NWEndCol), n.depth() + 1, NWStartRow, NWStartCol, NWEndRow, NWEndCol));
-        divideRegulated(n.northwest, image, compressionLevel, maxAcceptableError);
+    /**
+     * Public method to populate the top of a quadTree the same way as
+     * divideRegulated, from channel totals which only cover the Nodes down
+     * to a given depth. Nodes at that depth are left undivided until
+     * divideBand is given the rows holding them.
+     * @param stats channel totals of the image, e.g. a TileGridStats of the given depth
+     * @param compressionLevel maxium allowed number of nodes per thousand pixels
+     * @param maxAcceptableError error threshold to hit or fall under for color difference
+     * @param depth depth of the Nodes left undivided
+     */
+    public void divideTop(RegionStats stats, double compressionLevel, double maxAcceptableError, int depth) {
+        if (isView()) {
+            throw new IllegalStateException("cannot divide a view of another QuadTree");
+        }
+        bandDepth = depth;
+        unregulated();
+        size += divideTop(root, stats, compressionLevel, maxAcceptableError);
+    }
 
-        int NEStartRow = n.startRow;
-        int NEEndRow = (n.endRow - n.startRow) / 2 + n.startRow;
-        int NEStartCol = (n.endCol - n.startCol) / 2 + n.startCol;
-        int NEEndCol = n.endCol;
-        n.setNortheast(new Node(findAverageColor(image, NEStartRow, NEStartCol, NEEndRow, NEEndCol), n.depth() + 1, NEStartRow, NEStartCol, NEEndRow, NEEndCol));
-        divideRegulated(n.northeast, image, compressionLevel, maxAcceptableError);
+    /**
+     * Private recursive method to populate a quadTree down to bandDepth
+     * @param n node to be populated with color data
+     * @param stats channel totals of the image
+     * @param compressionLevel maxium allowed number of nodes per thousand pixels
+     * @param maxAcceptableError error threshold to hit or fall under for color difference
+     * @return number of Nodes added below n
+     */
+    private int divideTop(Node n, RegionStats stats, double compressionLevel, double maxAcceptableError) {
+        if (n.depth() == bandDepth || !shouldDivide(n, stats, compressionLevel, maxAcceptableError)) {
+            return 0;
+        }
+        split(n, stats);
+        return 4 + divideTop(n.northwest, stats, compressionLevel, maxAcceptableError)
+                + divideTop(n.northeast, stats, compressionLevel, maxAcceptableError)
+                + divideTop(n.southwest, stats, compressionLevel, maxAcceptableError)
+                + divideTop(n.southeast, stats, compressionLevel, maxAcceptableError);
+    }
 
-        int SWStartRow = (n.endRow - n.startRow) / 2 + n.startRow;
-        int SWEndRow = n.endRow;
-        int SWStartCol = n.startCol;
-        int SWEndCol = (n.endCol - n.startCol) / 2 + n.startCol;
-        n.setSouthwest(new Node(findAverageColor(image, SWStartRow, SWStartCol, SWEndRow, SWEndCol), n.depth() + 1, SWStartRow, SWStartCol, SWEndRow, SWEndCol));
-        divideRegulated(n.southwest, image, compressionLevel, maxAcceptableError);
-        
+    /**
+     * Public method to divide the Nodes left by divideTop which lie in a band
+     * of rows, using the pixels of that band. The band must run between two
+     * Node boundaries at the depth given to divideTop.
+     * @param band Raster holding at least the rows [startRow, endRow)
+     * @param startRow first row of the band
+     * @param endRow row after the last row of the band
+     * @param compressionLevel maxium allowed number of nodes per thousand pixels
+     * @param maxAcceptableError error threshold to hit or fall under for color difference
+     */
+    public void divideBand(Raster band, int startRow, int endRow, double compressionLevel, double maxAcceptableError) {
+        if (bandDepth < 0) {
+            throw new IllegalStateException("divideBand called before divideTop");
+        }
+        size += divideBand(root, new SummedAreaTable(band), startRow, endRow, compressionLevel, maxAcceptableError);
+    }
 
-        int SEStartRow = (n.endRow - n.startRow) / 2 + n.startRow;
-        int SEEndRow = n.endRow;
-        int SEStartCol = (n.endCol - n.startCol) / 2 + n.startCol;
-        int SEEndCol = n.endCol;
-        n.setSoutheast(new Node(findAverageColor(image, SEStartRow, SEStartCol, SEEndRow, SEEndCol), n.depth() + 1, SEStartRow, SEStartCol, SEEndRow, SEEndCol));
-        divideRegulated(n.southeast, image, compressionLevel, maxAcceptableError);
-        size += 4;
+    /**
+     * Private recursive method to divide the Nodes at bandDepth lying in a band of rows
+     * @param n Node whose subtree is searched
+     * @param stats channel totals of the band
+     * @param startRow first row of the band
+     * @param endRow row after the last row of the band
+     * @param compressionLevel maxium allowed number of nodes per thousand pixels
+     * @param maxAcceptableError error threshold to hit or fall under for color difference
+     * @return number of Nodes added below n
+     */
+    private int divideBand(Node n, RegionStats stats, int startRow, int endRow, double compressionLevel, double maxAcceptableError) {
+        if (n == null || n.getEndRow() <= startRow || n.getStartRow() >= endRow) {
+            return 0;
+        }
+        if (n.depth() == bandDepth) {
+            return divideRegulated(n, stats, compressionLevel, maxAcceptableError);
+        }
+        return divideBand(n.northwest, stats, startRow, endRow, compressionLevel, maxAcceptableError)
+                + divideBand(n.northeast, stats, startRow, endRow, compressionLevel, maxAcceptableError)
+                + divideBand(n.southwest, stats, startRow, endRow, compressionLevel, maxAcceptableError)
+                + divideBand(n.southeast, stats, startRow, endRow, compressionLevel, maxAcceptableError);
+    }
+
+    /**
+     * Public method to discard the Nodes added by divideBand for a band of
+     * rows, once that band has been rendered
+     * @param startRow first row of the band
+     * @param endRow row after the last row of the band
+     */
+    public void pruneBand(int startRow, int endRow) {
+        pruneBand(root, startRow, endRow);
+    }
+
+    /**
+     * Private recursive method to discard the subtrees below the Nodes at
+     * bandDepth lying in a band of rows
+     * @param n Node whose subtree is searched
+     * @param startRow first row of the band
+     * @param endRow row after the last row of the band
+     */
+    private void pruneBand(Node n, int startRow, int endRow) {
+        if (n == null || n.getEndRow() <= startRow || n.getStartRow() >= endRow) {
+            return;
+        }
+        if (n.depth() == bandDepth) {
+            size -= countNodes(n) - 1;
+            n.setNorthwest(null);
+            n.setNortheast(null);
+            n.setSouthwest(null);
+            n.setSoutheast(null);
+            return;
+        }
+        pruneBand(n.northwest, startRow, endRow);
+        pruneBand(n.northeast, startRow, endRow);
+        pruneBand(n.southwest, startRow, endRow);
+        pruneBand(n.southeast, startRow, endRow);
+    }
+
+    /**
+     * Task which divides a Node and forks its quadrants while they hold
+     * at least granularity pixels, counting the Nodes it adds
+     */
+    private class DivideTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L; //tasks are never serialized, but RecursiveAction is Serializable
+        private final Node n; //Node to be divided
+        private final RegionStats stats; //channel totals of the image to be compressed
+        private final double compressionLevel; //maxium allowed number of nodes per thousand pixels
+        private final double maxAcceptableError; //error threshold for color difference
+        private final int granularity; //smallest Node, in pixels, whose quadrants are forked
+        private int added; //number of Nodes added below n once the task completes
+
+        private DivideTask(Node n, RegionStats stats, double compressionLevel, double maxAcceptableError, int granularity) {
+            this.n = n;
+            this.stats = stats;
+            this.compressionLevel = compressionLevel;
+            this.maxAcceptableError = maxAcceptableError;
+            this.granularity = granularity;
+        }
+
+        @Override
+        protected void compute() {
+            if ((n.getEndCol() - n.getStartCol()) * (n.getEndRow() - n.getStartRow()) < granularity) {
+                added = divideRegulated(n, stats, compressionLevel, maxAcceptableError);
+                return;
+            }
+            if (!shouldDivide(n, stats, compressionLevel, maxAcceptableError)) {
+                return;
+            }
+            split(n, stats);
+            DivideTask northwest = new DivideTask(n.northwest(), stats, compressionLevel, maxAcceptableError, granularity);
+            DivideTask northeast = new DivideTask(n.northeast(), stats, compressionLevel, maxAcceptableError, granularity);
+            DivideTask southwest = new DivideTask(n.southwest(), stats, compressionLevel, maxAcceptableError, granularity);
+            DivideTask southeast = new DivideTask(n.southeast(), stats, compressionLevel, maxAcceptableError, granularity);
+            invokeAll(northwest, northeast, southwest, southeast);
+            added = 4 + northwest.added + northeast.added + southwest.added + southeast.added;
+        }
+    }
+
+    /**
+     * Private recursive method to populate a quadTree with nodes down to 
+     * a certain compression or under a certain error threshold
+     * @param  n node to be populated with color data 
+     * @param stats channel totals of the image to be compressed
+     * @param compressionLevel maxium allowed number of nodes per thousand pixels
+     * @param maxAcceptableError error threshold to hit or fall under for color difference
+     * @return number of Nodes added below n
+     */
+    private int divideRegulated(Node n, RegionStats stats, double compressionLevel, double maxAcceptableError) {
+        if (!shouldDivide(n, stats, compressionLevel, maxAcceptableError)) {
+            return 0;
+        }
+        split(n, stats);
+        return 4 + divideRegulated(n.northwest, stats, compressionLevel, maxAcceptableError)
+                + divideRegulated(n.northeast, stats, compressionLevel, maxAcceptableError)
+                + divideRegulated(n.southwest, stats, compressionLevel, maxAcceptableError)
+                + divideRegulated(n.southeast, stats, compressionLevel, maxAcceptableError);
+    }
+
+    /**
+     * Records the error of a Node and decides whether it should be divided,
+     * i.e. it covers more than one pixel, its depth is within the compression
+     * level and its error is not under the threshold
+     * @param n Node to be checked
+     * @param stats channel totals of the image to be compressed
+     * @param compressionLevel maxium allowed number of nodes per thousand pixels
+     * @param maxAcceptableError error threshold to hit or fall under for color difference
+     * @return true if n should be divided, false otherwise
+     */
+    private boolean shouldDivide(Node n, RegionStats stats, double compressionLevel, double maxAcceptableError) {
+        if (n == null || (n.getEndCol() - n.getStartCol()) * (n.getEndRow() - n.getStartRow()) < 2) {
+            return false;
+        }
+
+        double error = recordError(n, stats);
+
+        int maxLeaves = (int) (compressionLevel * stats.rows() * stats.columns());
         
+        if (Math.pow(4, n.depth()) > maxLeaves) {
+            return false;
+        }
+
+        return error >= maxAcceptableError;
+    }
+
+    /**
+     * Finds and records the error of a Node, the mean squared color
+     * distance of its pixels from its average color
+     * @param n Node covering at least one pixel
+     * @param stats channel totals of the image
+     * @return error of n
+     */
+    private double recordError(Node n, RegionStats stats) {
+        Color average = findAverageColor(stats, n.getStartRow(), n.getStartCol(), n.getEndRow(), n.getEndCol());
+        double colorDistance = stats.squaredError(n.getStartRow(), n.getStartCol(), n.getEndRow(), n.getEndCol(), average);
+        n.error = Math.abs(colorDistance/((n.getEndCol() - n.getStartCol())*(n.getEndRow()- n.getStartRow())));
+        return n.error;
+    }
+
+    /**
+     * Gives a Node four children covering its quadrants, each holding
+     * the average color of its section of the image
+     * @param n Node to be split
+     * @param stats channel totals of the image
+     */
+    private void split(Node n, RegionStats stats) {
+        split(n);
+        for (Node child : new Node[] { n.northwest(), n.northeast(), n.southwest(), n.southeast() }) {
+            child.set(findAverageColor(stats, child.getStartRow(), child.getStartCol(), child.getEndRow(), child.getEndCol()));
+        }
+    }
+
+    /**
+     * Gives a Node four children covering its quadrants, without colors
+     * @param n Node to be split
+     */
+    private void split(Node n) {
+        int midRow = (n.endRow - n.startRow) / 2 + n.startRow;
+        int midCol = (n.endCol - n.startCol) / 2 + n.startCol;
+        n.setNorthwest(new Node(null, n.depth() + 1, n.startRow, n.startCol, midRow, midCol));
+        n.setNortheast(new Node(null, n.depth() + 1, n.startRow, midCol, midRow, n.endCol));
+        n.setSouthwest(new Node(null, n.depth() + 1, midRow, n.startCol, n.endRow, midCol));
+        n.setSoutheast(new Node(null, n.depth() + 1, midRow, midCol, n.endRow, n.endCol));
+    }
+
+    /**
+     * Method to find the average rgb color values of a whole image, the
+     * same as findAverageColor would from the image's channel totals
+     * @param image array of pixel color data
+     * @return Color average color of the image
+     */
+    private static Color findAverageColor(Raster image) {
+        long red = 0;
+        long green = 0;
+        long blue = 0;
+        int[] pixels = image.pixels();
+        for (int i = image.firstRow(); i < image.endRow(); i++) {
+            int offset = image.rowOffset(i);
+            for (int j = 0; j < image.columns(); j++) {
+                int rgb = pixels[offset + j];
+                red += Raster.red(rgb);
+                green += Raster.green(rgb);
+                blue += Raster.blue(rgb);
+            }
+        }
+        double area = (double) image.rows() * image.columns();
+        return new Color((int) (red / area), (int) (green / area), (int) (blue / area));
     }
 
     /**
      * Method to find the average rgb color values for a range of pixels
-     * @param image pixel color array which the pixel quadrent is drawn
+     * in constant time, using the channel totals of the image
+     * @param stats channel totals of the image the pixel quadrant is drawn from
      * @param startRow start row of pixel quadrant
      * @param startCol start column of pixel quadrant
      * @param endRow end row of pixel quadrant
      * @param endCol end column of pixel quadrant
      * @return Color average color of pixel range
      */
-    private Color findAverageColor(Color[][] image, int startRow, int startCol, int endRow, int endCol) {
-        double redAverage = 0;
-        double greenAverage = 0;
-        double blueAverage = 0;
-        for (int i = startRow; i < endRow; i++) {
-            for (int j = startCol; j < endCol; j++) {
-                Color c = image[i][j];
-                redAverage += c.getRed();
-                greenAverage += c.getGreen();
-                blueAverage += c.getBlue();
+    private Color findAverageColor(RegionStats stats, int startRow, int startCol, int endRow, int endCol) {
+        double area = (endRow - startRow) * (endCol - startCol);
+        double redAverage = stats.sumRed(startRow, startCol, endRow, endCol) / area;
+        double greenAverage = stats.sumGreen(startRow, startCol, endRow, endCol) / area;
+        double blueAverage = stats.sumBlue(startRow, startCol, endRow, endCol) / area;
+        return new Color((int)redAverage, (int)greenAverage, (int)blueAverage);
+    }
+
+    /**
+     * A leaf of a QuadTree, as given by regionLeaves
+     */
+    public static class Leaf {
+        private final int startRow; //start row of the leaf
+        private final int startCol; //start column of the leaf
+        private final int endRow; //end row (exclusive) of the leaf
+        private final int endCol; //end column (exclusive) of the leaf
+        private final int depth; //depth of the leaf relative to the root
+        private final Color color; //average color of the leaf
+
+        private Leaf(int startRow, int startCol, int endRow, int endCol, int depth, Color color) {
+            this.startRow = startRow;
+            this.startCol = startCol;
+            this.endRow = endRow;
+            this.endCol = endCol;
+            this.depth = depth;
+            this.color = color;
+        }
+
+        public int getStartRow() { return startRow; }
+
+        public int getStartCol() { return startCol; }
+
+        public int getEndRow() { return endRow; }
+
+        public int getEndCol() { return endCol; }
+
+        public int depth() { return depth; }
+
+        public Color get() { return color; }
+    }
+
+    /**
+     * Finds the color the tree gives a pixel, descending only through the
+     * Nodes holding it
+     * @param row row of the pixel
+     * @param col column of the pixel
+     * @return color of the leaf holding the pixel
+     */
+    public Color colorAt(int row, int col) {
+        if (row < STARTIDX || row >= rows() || col < STARTIDX || col >= columns()) {
+            throw new IllegalArgumentException("(" + row + ", " + col + ") is outside the image");
+        }
+        Node n = root;
+        while (!isLeaf(n)) {
+            int midRow = (n.getEndRow() - n.getStartRow()) / 2 + n.getStartRow();
+            int midCol = (n.getEndCol() - n.getStartCol()) / 2 + n.getStartCol();
+            if (row < midRow) {
+                n = col < midCol ? n.northwest() : n.northeast();
+            } else {
+                n = col < midCol ? n.southwest() : n.southeast();
             }
         }
-        redAverage /= (endRow - startRow) * (endCol - startCol);
-        greenAverage /= (endRow - startRow) * (endCol - startCol);
-        blueAverage /= (endRow - startRow) * (endCol - startCol);
-        return new Color((int)redAverage, (int)greenAverage, (int)blueAverage);
+        return n.get();
+    }
+
+    /**
+     * Finds the average color of a rectangle of the image, visiting only the
+     * Nodes crossing its border. Nodes inside the rectangle add their own
+     * average color without being descended into, so the result matches the
+     * average over the image quadCompression renders, to within rounding.
+     * @param startRow start row of the rectangle
+     * @param startCol start column of the rectangle
+     * @param endRow end row (exclusive) of the rectangle
+     * @param endCol end column (exclusive) of the rectangle
+     * @return average color of the part of the rectangle inside the image
+     */
+    public Color regionAverage(int startRow, int startCol, int endRow, int endCol) {
+        long[] totals = new long[4];
+        regionTotals(root, Math.max(startRow, STARTIDX), Math.max(startCol, STARTIDX),
+                Math.min(endRow, rows()), Math.min(endCol, columns()), totals);
+        if (totals[3] == 0) {
+            throw new IllegalArgumentException("rectangle holds no pixels of the image");
+        }
+        return new Color((int) (totals[0] / totals[3]), (int) (totals[1] / totals[3]), (int) (totals[2] / totals[3]));
+    }
+
+    /**
+     * Adds the color totals and pixel count of the part of a rectangle inside a Node
+     * @param n Node to be checked
+     * @param startRow start row of the rectangle
+     * @param startCol start column of the rectangle
+     * @param endRow end row (exclusive) of the rectangle
+     * @param endCol end column (exclusive) of the rectangle
+     * @param totals red, green and blue totals and pixel count, added to
+     */
+    private void regionTotals(Node n, int startRow, int startCol, int endRow, int endCol, long[] totals) {
+        int rowCount = Math.min(endRow, n.getEndRow()) - Math.max(startRow, n.getStartRow());
+        int colCount = Math.min(endCol, n.getEndCol()) - Math.max(startCol, n.getStartCol());
+        if (rowCount <= 0 || colCount <= 0) {
+            return;
+        }
+        long area = (long) rowCount * colCount;
+        if (isLeaf(n) || area == (long) (n.getEndRow() - n.getStartRow()) * (n.getEndCol() - n.getStartCol())) {
+            totals[0] += n.get().getRed() * area;
+            totals[1] += n.get().getGreen() * area;
+            totals[2] += n.get().getBlue() * area;
+            totals[3] += area;
+            return;
+        }
+        regionTotals(n.northwest(), startRow, startCol, endRow, endCol, totals);
+        regionTotals(n.northeast(), startRow, startCol, endRow, endCol, totals);
+        regionTotals(n.southwest(), startRow, startCol, endRow, endCol, totals);
+        regionTotals(n.southeast(), startRow, startCol, endRow, endCol, totals);
+    }
+
+    /**
+     * Finds the leaves overlapping a rectangle of the image, visiting only
+     * the Nodes overlapping it
+     * @param startRow start row of the rectangle
+     * @param startCol start column of the rectangle
+     * @param endRow end row (exclusive) of the rectangle
+     * @param endCol end column (exclusive) of the rectangle
+     * @return leaves overlapping the rectangle in pre-order, with their whole bounds
+     */
+    public List<Leaf> regionLeaves(int startRow, int startCol, int endRow, int endCol) {
+        List<Leaf> leaves = new ArrayList<>();
+        regionLeaves(root, startRow, startCol, endRow, endCol, leaves);
+        return leaves;
+    }
+
+    private void regionLeaves(Node n, int startRow, int startCol, int endRow, int endCol, List<Leaf> leaves) {
+        if (Math.min(endRow, n.getEndRow()) <= Math.max(startRow, n.getStartRow())
+                || Math.min(endCol, n.getEndCol()) <= Math.max(startCol, n.getStartCol())) {
+            return;
+        }
+        if (isLeaf(n)) {
+            leaves.add(new Leaf(n.getStartRow(), n.getStartCol(), n.getEndRow(), n.getEndCol(), n.depth(), n.get()));
+            return;
+        }
+        regionLeaves(n.northwest(), startRow, startCol, endRow, endCol, leaves);
+        regionLeaves(n.northeast(), startRow, startCol, endRow, endCol, leaves);
+        regionLeaves(n.southwest(), startRow, startCol, endRow, endCol, leaves);
+        regionLeaves(n.southeast(), startRow, startCol, endRow, endCol, leaves);
+    }
+
+    /**
+     * Copies the leaves of this tree, or of this view, into a LinearQuadTree
+     * @return linear tree with the same leaves
+     */
+    public LinearQuadTree toLinear() {
+        LinearQuadTree linear = new LinearQuadTree(rows(), columns());
+        toLinear(root, 0L, linear);
+        linear.trim();
+        return linear;
+    }
+
+    private void toLinear(Node n, long code, LinearQuadTree linear) {
+        if ((n.getEndRow() - n.getStartRow()) * (n.getEndCol() - n.getStartCol()) < 1) {
+            return;
+        }
+        if (isLeaf(n)) {
+            linear.addLeaf(code, n.depth(), Raster.pack(n.get()));
+            return;
+        }
+        int shift = 2 * (LinearQuadTree.MAXDEPTH - n.depth() - 1);
+        toLinear(n.northwest(), code, linear);
+        toLinear(n.northeast(), code | (1L << shift), linear);
+        toLinear(n.southwest(), code | (2L << shift), linear);
+        toLinear(n.southeast(), code | (3L << shift), linear);
+    }
+
+    /**
+     * Writes this tree, or this view, to a .qtc file in the writer's layout
+     * @param out writer of the file
+     */
+    public void encode(QtcWriter out) {
+        if (out.levelOrder()) {
+            encodeLevels(out);
+        } else {
+            encode(root, out);
+        }
+    }
+
+    private void encode(Node n, QtcWriter out) {
+        int area = (n.getEndRow() - n.getStartRow()) * (n.getEndCol() - n.getStartCol());
+        if (area < 1) {
+            return;
+        }
+        boolean leaf = isLeaf(n);
+        if (area >= 2) {
+            out.writeSplit(!leaf);
+        }
+        if (leaf) {
+            out.writeColor(Raster.pack(n.get()));
+            return;
+        }
+        encode(n.northwest(), out);
+        encode(n.northeast(), out);
+        encode(n.southwest(), out);
+        encode(n.southeast(), out);
+    }
+
+    /**
+     * Writes every Node a level at a time, with the colors of the level's
+     * Nodes before whether each is split
+     * @param out writer of the file
+     */
+    private void encodeLevels(QtcWriter out) {
+        List<Node> level = new ArrayList<>();
+        level.add(root);
+        while (!level.isEmpty()) {
+            List<Node> next = new ArrayList<>();
+            for (Node n : level) {
+                if ((n.getEndRow() - n.getStartRow()) * (n.getEndCol() - n.getStartCol()) >= 1) {
+                    out.writeColor(Raster.pack(n.get()));
+                }
+            }
+            for (Node n : level) {
+                if ((n.getEndRow() - n.getStartRow()) * (n.getEndCol() - n.getStartCol()) >= 2) {
+                    boolean split = !isLeaf(n);
+                    out.writeSplit(split);
+                    if (split) {
+                        next.add(n.northwest());
+                        next.add(n.northeast());
+                        next.add(n.southwest());
+                        next.add(n.southeast());
+                    }
+                }
+            }
+            out.endLevel();
+            level = next;
+        }
+    }
+
+    /**
+     * Rebuilds a tree from a .qtc file. In pre-order files each split Node
+     * is given the average of its children's colors, weighted by the pixels
+     * they cover.
+     * @param in reader of the file
+     * @return tree held in the file
+     * @throws EOFException if a pre-order file ends before the tree does
+     */
+    public static QuadTree decode(QtcReader in) throws EOFException {
+        return decode(in, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Rebuilds a tree from a .qtc file, cut at a given depth. A level-ordered
+     * file read in part gives the tree down to where its data ends, with Nodes
+     * whose colors were not read holding their parent's color.
+     * @param in reader of the file
+     * @param maxDepth depth at which Nodes are treated as leaves
+     * @return tree held in the file
+     * @throws EOFException if a pre-order file ends before the tree does
+     */
+    public static QuadTree decode(QtcReader in, int maxDepth) throws EOFException {
+        QuadTree tree = new QuadTree(in.rows(), in.columns());
+        if (in.levelOrder()) {
+            tree.decodeLevels(in, maxDepth);
+            return tree;
+        }
+        tree.size += tree.decode(tree.root, in);
+        return maxDepth == Integer.MAX_VALUE ? tree : new QuadTree(tree, maxDepth);
+    }
+
+    /**
+     * Reads Nodes a level at a time until maxDepth or the end of the data read
+     * @param in reader of a level-ordered file
+     * @param maxDepth depth at which Nodes are treated as leaves
+     * @throws EOFException never, as the data is checked before each read
+     */
+    private void decodeLevels(QtcReader in, int maxDepth) throws EOFException {
+        //matches the color findAverageColor gives a Node with no pixels
+        Color empty = new Color(0, 0, 0);
+        root.set(empty);
+        List<Node> level = new ArrayList<>();
+        level.add(root);
+        for (int depth = 0; !level.isEmpty(); depth++) {
+            List<Node> splittable = new ArrayList<>();
+            for (Node n : level) {
+                int area = (n.getEndRow() - n.getStartRow()) * (n.getEndCol() - n.getStartCol());
+                if (area < 1) {
+                    n.set(empty);
+                    continue;
+                }
+                if (!in.hasColor()) {
+                    return;
+                }
+                int rgb = in.readColor();
+                n.set(new Color(Raster.red(rgb), Raster.green(rgb), Raster.blue(rgb)));
+                if (area >= 2) {
+                    splittable.add(n);
+                }
+            }
+            if (depth >= maxDepth || !in.hasSplits(splittable.size())) {
+                return;
+            }
+            boolean[] splits = in.readSplits(splittable.size());
+            level = new ArrayList<>();
+            for (int i = 0; i < splits.length; i++) {
+                if (splits[i]) {
+                    Node n = splittable.get(i);
+                    split(n);
+                    for (Node child : new Node[] { n.northwest(), n.northeast(), n.southwest(), n.southeast() }) {
+                        child.set(n.get());
+                        level.add(child);
+                    }
+                    size += 4;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the subtree rooted at a Node
+     * @param n Node whose subtree is next in the file
+     * @param in reader of the file
+     * @return number of Nodes added below n
+     * @throws EOFException if the file ends before the tree does
+     */
+    private int decode(Node n, QtcReader in) throws EOFException {
+        int area = (n.getEndRow() - n.getStartRow()) * (n.getEndCol() - n.getStartCol());
+        if (area < 1) {
+            //matches the color findAverageColor gives a Node with no pixels
+            n.set(new Color(0, 0, 0));
+            return 0;
+        }
+        if (area < 2 || !in.readSplit()) {
+            int rgb = in.readColor();
+            n.set(new Color(Raster.red(rgb), Raster.green(rgb), Raster.blue(rgb)));
+            return 0;
+        }
+        split(n);
+        int added = 4 + decode(n.northwest(), in) + decode(n.northeast(), in)
+                + decode(n.southwest(), in) + decode(n.southeast(), in);
+        long red = 0;
+        long green = 0;
+        long blue = 0;
+        for (Node child : new Node[] { n.northwest(), n.northeast(), n.southwest(), n.southeast() }) {
+            long childArea = (child.getEndRow() - child.getStartRow()) * (child.getEndCol() - child.getStartCol());
+            red += child.get().getRed() * childArea;
+            green += child.get().getGreen() * childArea;
+            blue += child.get().getBlue() * childArea;
+        }
+        n.set(new Color((int) (red / area), (int) (green / area), (int) (blue / area)));
+        return added;
     }
 
     /**
@@ -271,7 +1493,7 @@ public class QuadTree {
      * @param origArray image to be traced
      * @param edgeArray array of image with edge filter applied
      */
-    public void edgeDetector(Color[][] origArray, Color[][] edgeArray) {
+    public void edgeDetector(Raster origArray, Raster edgeArray) {
         edgeDetector(root, origArray, edgeArray);
     }
 
@@ -282,267 +1504,112 @@ public class QuadTree {
      * @param origArray image to be traced
      * @param edgeArray array of image with edge filter applied
      */
-    private static void edgeDetector(Node n, Color[][] origArray, Color[][] edgeArray) {
-        if (n == null) {
+    private void edgeDetector(Node n, Raster origArray, Raster edgeArray) {
+        if (n == null || n.getEndRow() <= edgeArray.firstRow() || n.getStartRow() >= edgeArray.endRow()) {
             return;
         }
 
-        Color black = new Color(0,0,0);
-
-        if (n.depth < 4 && n.isLeaf()) {
-            for (int i = n.getStartRow(); i < n.getEndRow(); i++) {
-                for (int j = n.getStartCol(); j < n.getEndCol(); j++) {
-                    edgeArray[i][j] = black;
-                }
-            }
+        if (n.depth < 4 && isLeaf(n)) {
+            fill(n, edgeArray.pixels(), edgeArray.firstRow(), edgeArray.endRow(), edgeArray.columns(), BLACK);
         } else if (n.depth < 4) {
             edgeDetector(n.northwest, origArray, edgeArray);
             edgeDetector(n.northeast, origArray, edgeArray);
             edgeDetector(n.southwest, origArray, edgeArray);
             edgeDetector(n.southeast, origArray, edgeArray);
         } else {
-            for (int x = n.getStartRow(); x < n.getEndRow(); x++) {
-                for (int y = n.getStartCol(); y < n.getEndCol(); y++) {
-                    int redTotal = 0;
-                    int greenTotal = 0;
-                    int blueTotal = 0;
-                    if ((x - 1) < STARTIDX) {//at first row
-                        if ((y - 1) < STARTIDX) {//at first coloumn
-                            for (int i = x; i < x + 2; i++) {
-                                for (int j = y; j < y + 2; j++) {
-                                    if (i == x && j == y) {
-                                        redTotal += CORNERPIXELWEIGHT * (origArray[i][j].getRed());
-                                        greenTotal += CORNERPIXELWEIGHT * (origArray[i][j].getGreen());
-                                        blueTotal += CORNERPIXELWEIGHT * (origArray[i][j].getBlue());
-                                    } else {
-                                        redTotal -= origArray[i][j].getRed();
-                                        greenTotal -= origArray[i][j].getGreen();
-                                        blueTotal -= origArray[i][j].getBlue();
-                                    }
-                                }
-                            }
-                        } else if ((y + 2) > origArray[STARTIDX].length) {//at last column
-                            for (int i = x; i < x + 2; i++) {
-                                for (int j = y - 1; j < y + 1; j++) {
-                                    if (i == x && j == y) {
-                                        redTotal += CORNERPIXELWEIGHT * (origArray[i][j].getRed());
-                                        greenTotal += CORNERPIXELWEIGHT * (origArray[i][j].getGreen());
-                                        blueTotal += CORNERPIXELWEIGHT * (origArray[i][j].getBlue());
-                                    } else {
-                                        redTotal -= origArray[i][j].getRed();
-                                        greenTotal -= origArray[i][j].getGreen();
-                                        blueTotal -= origArray[i][j].getBlue();
-                                    }
-                                }
-                            }
-                        } else {//at middle column
-                            for (int i = x; i < x + 2; i++) {
-                                for (int j = y - 1; j < y + 2; j++) {
-                                    if (i == x && j == y) {
-                                        redTotal += SIDEPIXELWEIGHT * (origArray[i][j].getRed());
-                                        greenTotal += SIDEPIXELWEIGHT * (origArray[i][j].getGreen());
-                                        blueTotal += SIDEPIXELWEIGHT * (origArray[i][j].getBlue());
-                                    } else {
-                                        redTotal -= origArray[i][j].getRed();
-                                        greenTotal -= origArray[i][j].getGreen();
-                                        blueTotal -= origArray[i][j].getBlue();
-                                    }
-                                }
-                            }
-                        }
-                    } else if ((x + 2) > origArray.length) {//at last row
-                        if ((y-1) < STARTIDX) {
-                            for (int i = x - 1; i < x + 1; i++) {
-                                for (int j = y; j < y + 2; j++) {
-                                    if (i == x && j == y) {
-                                        redTotal += CORNERPIXELWEIGHT * (origArray[i][j].getRed());
-                                        greenTotal += CORNERPIXELWEIGHT * (origArray[i][j].getGreen());
-                                        blueTotal += CORNERPIXELWEIGHT * (origArray[i][j].getBlue());
-                                    } else {
-                                        redTotal -= origArray[i][j].getRed();
-                                        greenTotal -= origArray[i][j].getGreen();
-                                        blueTotal -= origArray[i][j].getBlue();
-                                    }
-                                }
-                            }
-                        } else if ((y + 2) > origArray[STARTIDX].length) {
-                            for (int i = x - 1; i < x + 1; i++) {
-                                for (int j = y - 1; j < y + 1; j++) {
-                                    if (i == x && j == y) {
-                                        redTotal += CORNERPIXELWEIGHT * (origArray[i][j].getRed());
-                                        greenTotal += CORNERPIXELWEIGHT * (origArray[i][j].getGreen());
-                                        blueTotal += CORNERPIXELWEIGHT * (origArray[i][j].getBlue());
-                                    } else {
-                                        redTotal -= origArray[i][j].getRed();
-                                        greenTotal -= origArray[i][j].getGreen();
-                                        blueTotal -= origArray[i][j].getBlue();
-                                    }
-                                }
-                            }
-                        } else {
-                            for (int i = x - 1; i < x + 1; i++) {
-                                for (int j = y - 1; j < y + 2; j++) {
-                                    if (i == x && j == y) {
-                                        redTotal += SIDEPIXELWEIGHT * (origArray[i][j].getRed());
-                                        greenTotal += SIDEPIXELWEIGHT * (origArray[i][j].getGreen());
-                                        blueTotal += SIDEPIXELWEIGHT * (origArray[i][j].getBlue());
-                                    } else {
-                                        redTotal -= origArray[i][j].getRed();
-                                        greenTotal -= origArray[i][j].getGreen();
-                                        blueTotal -= origArray[i][j].getBlue();
-                                    }
-                                }
-                            }
-                        }
-                    } else if ((y - 1) < STARTIDX) {
-                        for (int i = x - 1; i < x + 2; i++) {
-                            for (int j = y; j < y + 2; j++) {
-                                if (i == x && j == y) {
-                                    redTotal += SIDEPIXELWEIGHT * (origArray[i][j].getRed());
-                                    greenTotal += SIDEPIXELWEIGHT * (origArray[i][j].getGreen());
-                                    blueTotal += SIDEPIXELWEIGHT * (origArray[i][j].getBlue());
-                                } else {
-                                    redTotal -= origArray[i][j].getRed();
-                                    greenTotal -= origArray[i][j].getGreen();
-                                    blueTotal -= origArray[i][j].getBlue();
-                                }
-                            }
-                        }
-                    } else if ((y + 2) > origArray[STARTIDX].length) {
-                        for (int i = x - 1; i < x + 2; i++) {
-                            for (int j = y - 1; j < y + 1; j++) {
-                                if (i == x && j == y) {
-                                    redTotal += SIDEPIXELWEIGHT * (origArray[i][j].getRed());
-                                    greenTotal += SIDEPIXELWEIGHT * (origArray[i][j].getGreen());
-                                    blueTotal += SIDEPIXELWEIGHT * (origArray[i][j].getBlue());
-                                } else {
-                                    redTotal -= origArray[i][j].getRed();
-                                    greenTotal -= origArray[i][j].getGreen();
-                                    blueTotal -= origArray[i][j].getBlue();
-                                }
-                            }
-                        }
-                    } else {
-                        for (int i = x - 1; i < x + 2; i++) {
-                            for (int j = y - 1; j < y + 2; j++) {
-                                if (i == x && j == y) {
-                                    redTotal += MIDDLEPIXELWEIGHT * (origArray[i][j].getRed());
-                                    greenTotal += MIDDLEPIXELWEIGHT * (origArray[i][j].getGreen());
-                                    blueTotal += MIDDLEPIXELWEIGHT * (origArray[i][j].getBlue());
-                                } else {
-                                    redTotal -= origArray[i][j].getRed();
-                                    greenTotal -= origArray[i][j].getGreen();
-                                    blueTotal -= origArray[i][j].getBlue();
-                                }
-                            }
-
-                        }
-                        
-                    }
-                    edgeArray[x][y] = new Color(Math.abs(redTotal), Math.abs(greenTotal), Math.abs(blueTotal));
-                }
-            }
-            
+            Convolution.EDGEDETECT.apply(origArray, edgeArray, n.getStartRow(), n.getStartCol(), n.getEndRow(), n.getEndCol());
         }
-        return;
     }
 
     /**
-     * Public method to populate a 2D array of color data from a QuadTree
-     * @param newPicture array of color data to be populated
+     * Public method to populate a 2D array of color data from a QuadTree.
+     * Only the leaves are visited, each filling its rows with its color, so
+     * every pixel is written once and nothing is allocated.
+     * @param newPicture array of color data to be populated, which may hold only a band of rows
      */
-    public void quadCompression(Color[][] newPicture) {
-        quadCompression(root, newPicture);
+    public void quadCompression(Raster newPicture) {
+        quadCompression(root, newPicture.pixels(), newPicture.firstRow(), newPicture.endRow(), newPicture.columns(), false);
     }
 
-   
     /**
-     * Private method populate a 2D array of color data 
-     * @param n node of color data used to populate 2D array
-     * @param newPicture array of color data to be populated
+     * Renders the whole image into a buffer supplied by the caller, which
+     * can be reused from one render to the next, such as the pixels of a
+     * BufferedImage of TYPE_INT_RGB
+     * @param buffer packed 0xRRGGBB pixels in rows, at least rows() * columns() long
      */
-    private static void quadCompression(Node n, Color[][] newPicture) {
-        if (n == null) {
-            return;
-        }
-
-        for (int i = n.getStartRow(); i < n.getEndRow(); i++) {
-            for (int j = n.getStartCol(); j < n.getEndCol(); j++) {
-                newPicture[i][j] = new Color(n.get().getRed(), n.get().getGreen(), n.get().getBlue());
-            }
-        }
-        quadCompression(n.northwest(), newPicture);
-        quadCompression(n.northeast(), newPicture);
-        quadCompression(n.southeast(), newPicture);
-        quadCompression(n.southwest(), newPicture);
-
+    public void quadCompression(int[] buffer) {
+        quadCompression(root, checkBuffer(buffer), STARTIDX, rows(), columns(), false);
     }
 
     /**
      * Public method to create an array of color data from a QuadTree 
      * and outline the QuadTree nodes
-     * @param newPicture array of color data to be populated
+     * @param newPicture array of color data to be populated, which may hold only a band of rows
      */
-    public void quadCompressionOutlined(Color[][] newPicture) {
-        quadCompressionOutlined(root, newPicture);
+    public void quadCompressionOutlined(Raster newPicture) {
+        quadCompression(root, newPicture.pixels(), newPicture.firstRow(), newPicture.endRow(), newPicture.columns(), true);
     }
 
     /**
-     * Private method to create an array of color data from a QuadTree 
-     * and outline the QuadTree nodes
-     * @param n node of data to populate the array and to be outlined
-     * @param newPicture array of color data to be populated
+     * Renders the whole image into a buffer supplied by the caller, outlining the QuadTree nodes
+     * @param buffer packed 0xRRGGBB pixels in rows, at least rows() * columns() long
      */
-    private static void quadCompressionOutlined(Node n, Color[][] newPicture) {
-        if (n == null) {
+    public void quadCompressionOutlined(int[] buffer) {
+        quadCompression(root, checkBuffer(buffer), STARTIDX, rows(), columns(), true);
+    }
+
+    /**
+     * Private method to fill the leaves below a Node with their colors. Each
+     * Node's children cover it exactly, so filling only the leaves gives the
+     * same image as filling every Node from the root down, and an outlined
+     * leaf's border covers the borders of the Nodes above it.
+     * @param n node of color data used to populate the array
+     * @param pixels packed pixels to be populated
+     * @param firstRow first image row held by pixels
+     * @param endRow image row after the last one held by pixels
+     * @param columns number of columns in a row of pixels
+     * @param outlined true to outline each leaf in red
+     */
+    private void quadCompression(Node n, int[] pixels, int firstRow, int endRow, int columns, boolean outlined) {
+        if (n == null || n.getEndRow() <= firstRow || n.getStartRow() >= endRow) {
             return;
         }
-        Color outlineRed = new Color(255,0,0);
-
-        for (int i = n.getStartRow(); i < n.getEndRow(); i++) {
-            for (int j = n.getStartCol(); j < n.getEndCol(); j++) {
-                if (i == n.getStartRow() || i == n.getEndRow()-1) {
-                    newPicture[i][j] = outlineRed;
-                } else if (j == n.getStartCol() || j == n.getEndCol()-1) {
-                    newPicture[i][j] = outlineRed;
-                } else {
-                    newPicture[i][j] = new Color(n.get().getRed(), n.get().getGreen(), n.get().getBlue());
-                }
+        if (isLeaf(n)) {
+            if (n.get() != null) {
+                fill(n, pixels, firstRow, endRow, columns, Raster.pack(n.get()));
             }
+            if (outlined) {
+                outline(n, pixels, firstRow, endRow, columns);
+            }
+            return;
         }
-        quadCompressionOutlined(n.northwest(), newPicture);
-        quadCompressionOutlined(n.northeast(), newPicture);
-        quadCompressionOutlined(n.southeast(), newPicture);
-        quadCompressionOutlined(n.southwest(), newPicture);
+        quadCompression(n.northwest(), pixels, firstRow, endRow, columns, outlined);
+        quadCompression(n.northeast(), pixels, firstRow, endRow, columns, outlined);
+        quadCompression(n.southwest(), pixels, firstRow, endRow, columns, outlined);
+        quadCompression(n.southeast(), pixels, firstRow, endRow, columns, outlined);
     }
 
     /**
      * Public method to outline nodes on an outlined image
      * @param edgePicture array of outlined pixels
      */
-    public void quadEdgeOutlined(Color[][] edgePicture) {
+    public void quadEdgeOutlined(Raster edgePicture) {
         quadEdgeOutlined(root, edgePicture);
     }
 
     /**
-     * Private method to outline nodes on an outlined image 
+     * Private method to outline the leaves below a Node, whose borders
+     * cover the borders of the Nodes above them
      * @param n node to be outlined
      * @param edgePicture array of outlined pixels
      */
-    private static void quadEdgeOutlined(Node n, Color[][] edgePicture) {
-        if (n == null) {
+    private void quadEdgeOutlined(Node n, Raster edgePicture) {
+        if (n == null || n.getEndRow() <= edgePicture.firstRow() || n.getStartRow() >= edgePicture.endRow()) {
             return;
         }
-        Color outlineRed = new Color(255,0,0);
-
-        for (int i = n.getStartRow(); i < n.getEndRow(); i++) {
-            for (int j = n.getStartCol(); j < n.getEndCol(); j++) {
-                if (i == n.getStartRow() || i == n.getEndRow()-1) {
-                    edgePicture[i][j] = outlineRed;
-                } else if (j == n.getStartCol() || j == n.getEndCol()-1) {
-                    edgePicture[i][j] = outlineRed;
-                } 
-            }
+        if (isLeaf(n)) {
+            outline(n, edgePicture.pixels(), edgePicture.firstRow(), edgePicture.endRow(), edgePicture.columns());
+            return;
         }
         quadEdgeOutlined(n.northwest(), edgePicture);
         quadEdgeOutlined(n.northeast(), edgePicture);
@@ -550,35 +1617,81 @@ public class QuadTree {
         quadEdgeOutlined(n.southwest(), edgePicture);
     }
 
+    /**
+     * Checks that a buffer can hold the whole image
+     * @param buffer buffer supplied by the caller
+     * @return buffer
+     */
+    private int[] checkBuffer(int[] buffer) {
+        if (buffer.length < (long) rows() * columns()) {
+            throw new IllegalArgumentException("buffer holds fewer than rows() * columns() pixels");
+        }
+        return buffer;
+    }
+
+    /**
+     * Sets the pixels of a Node held by a band of rows to one color, a row span at a time
+     * @param n Node to be filled
+     * @param pixels packed pixels of the band
+     * @param firstRow first image row held by pixels
+     * @param endRow image row after the last one held by pixels
+     * @param columns number of columns in a row of pixels
+     * @param rgb packed color
+     */
+    private static void fill(Node n, int[] pixels, int firstRow, int endRow, int columns, int rgb) {
+        for (int i = Math.max(n.getStartRow(), firstRow); i < Math.min(n.getEndRow(), endRow); i++) {
+            int offset = (i - firstRow) * columns;
+            Arrays.fill(pixels, offset + n.getStartCol(), offset + n.getEndCol(), rgb);
+        }
+    }
+
+    /**
+     * Sets the border pixels of a Node held by a band of rows to red
+     * @param n Node to be outlined
+     * @param pixels packed pixels of the band
+     * @param firstRow first image row held by pixels
+     * @param endRow image row after the last one held by pixels
+     * @param columns number of columns in a row of pixels
+     */
+    private static void outline(Node n, int[] pixels, int firstRow, int endRow, int columns) {
+        if (n.getStartCol() >= n.getEndCol()) {
+            return;
+        }
+        for (int i = Math.max(n.getStartRow(), firstRow); i < Math.min(n.getEndRow(), endRow); i++) {
+            int offset = (i - firstRow) * columns;
+            if (i == n.getStartRow() || i == n.getEndRow() - 1) {
+                Arrays.fill(pixels, offset + n.getStartCol(), offset + n.getEndCol(), OUTLINE);
+            } else {
+                pixels[offset + n.getStartCol()] = OUTLINE;
+                pixels[offset + n.getEndCol() - 1] = OUTLINE;
+            }
+        }
+    }
+
     /**
      * Public method to create a blurred effect on an image
-     * @param origArray Color[][] to be filtered
-     * @param motionArray Color[][] with filter applied
+     * @param origArray Raster to be filtered
+     * @param motionArray Raster with filter applied
      */
-    public void motionBlur(Color[][] origArray, Color[][] motionArray) {
+    public void motionBlur(Raster origArray, Raster motionArray) {
         motionBlur(root, origArray, motionArray);
     }
 
     /**
-     * Takes a given Color[][] and modifies so that the image as a whole 
+     * Takes a given Raster and modifies so that the image as a whole 
      * is given a blurred effect on detailed nodes
      * @param n node which is used to figure out whether array 
      * segment is worth filtering.
-     * @param origArray Color[][] to be filtered
-     * @param motionArray Color[][] with filter applied
+     * @param origArray Raster to be filtered
+     * @param motionArray Raster with filter applied
      */
-    private void motionBlur(Node n, Color[][] origArray, Color[][] motionArray) {
-        if (n == null) {
+    private void motionBlur(Node n, Raster origArray, Raster motionArray) {
+        if (n == null || n.getEndRow() <= motionArray.firstRow() || n.getStartRow() >= motionArray.endRow()) {
             return;
         } 
 
-        if (n.depth < 3 && n.isLeaf()) {
-            Color ave = findAverageColor(origArray, n.getStartRow(), n.getStartCol(), n.getEndRow(), n.getEndCol());
-            for (int a = n.getStartRow(); a < (n.getEndRow()); a++) {
-                for (int b = n.getStartCol(); b < (n.getEndCol()); b++) {
-                    motionArray[a][b] = ave;
-                }
-            }
+        if (n.depth < 3 && isLeaf(n)) {
+            fill(n, motionArray.pixels(), motionArray.firstRow(), motionArray.endRow(), motionArray.columns(), Raster.pack(n.get()));
             return;
         } else if (n.depth < 3) {
             motionBlur(n.northwest, origArray, motionArray);
@@ -586,197 +1699,7 @@ public class QuadTree {
             motionBlur(n.southwest, origArray, motionArray);
             motionBlur(n.southeast, origArray, motionArray);
         } else {
-            //System.out.println("start " + n.getStartRow() + "end " +  (n.getEndRow() - n.getStartRow()));
-            for (int x = n.getStartRow(); x < (n.getEndRow()); x++) {
-                for (int y = n.getStartCol(); y < (n.getEndCol()); y++) {
-                    int redTotal = 0;
-                    int greenTotal = 0;
-                    int blueTotal = 0;
-                    if ((x - 1) < STARTIDX) {//no x-1
-                        if ((y - 1) < STARTIDX) {//no y -1
-                            redTotal += origArray[x][y].getRed()/FOURTH;
-                            redTotal += origArray[x][y+1].getRed()/EIGTH;
-                            redTotal += origArray[x+1][y].getRed()/EIGTH;
-                            redTotal += origArray[x+1][y+1].getRed()/SIXTEENTH;
-
-                            blueTotal += origArray[x][y].getBlue()/FOURTH;
-                            blueTotal += origArray[x][y+1].getBlue()/EIGTH;
-                            blueTotal += origArray[x+1][y].getBlue()/EIGTH;
-                            blueTotal += origArray[x+1][y+1].getBlue()/SIXTEENTH;
-
-                            greenTotal += origArray[x][y].getGreen()/FOURTH;
-                            greenTotal += origArray[x][y+1].getGreen()/EIGTH;
-                            greenTotal += origArray[x+1][y].getGreen()/EIGTH;
-                            greenTotal += origArray[x+1][y+1].getGreen()/SIXTEENTH;
-                            
-                        } else if ((y + 2) > origArray[STARTIDX].length) {//no y + 1
-                            redTotal += origArray[x][y].getRed()/FOURTH;
-                            redTotal += origArray[x][y-1].getRed()/EIGTH;
-                            redTotal += origArray[x+1][y].getRed()/EIGTH;
-                            redTotal += origArray[x+1][y-1].getRed()/SIXTEENTH;
-
-                            blueTotal += origArray[x][y].getBlue()/FOURTH;
-                            blueTotal += origArray[x][y-1].getBlue()/EIGTH;
-                            blueTotal += origArray[x+1][y].getBlue()/EIGTH;
-                            blueTotal += origArray[x+1][y-1].getBlue()/SIXTEENTH;
-
-                            greenTotal += origArray[x][y].getGreen()/FOURTH;
-                            greenTotal += origArray[x][y-1].getGreen()/EIGTH;
-                            greenTotal += origArray[x+1][y].getGreen()/EIGTH;
-                            greenTotal += origArray[x+1][y-1].getGreen()/SIXTEENTH;
-                        } else {
-                            redTotal += origArray[x][y].getRed()/FOURTH;
-                            redTotal += origArray[x][y-1].getRed()/EIGTH;
-                            redTotal += origArray[x][y+1].getRed()/EIGTH;
-                            redTotal += origArray[x+1][y].getRed()/EIGTH;
-                            redTotal += origArray[x+1][y+1].getRed()/SIXTEENTH;
-                            redTotal += origArray[x+1][y-1].getRed()/SIXTEENTH;
-
-                            blueTotal += origArray[x][y].getBlue()/FOURTH;
-                            blueTotal += origArray[x][y-1].getBlue()/EIGTH;
-                            blueTotal += origArray[x][y+1].getBlue()/EIGTH;
-                            blueTotal += origArray[x+1][y].getBlue()/EIGTH;
-                            blueTotal += origArray[x+1][y+1].getBlue()/SIXTEENTH;
-                            blueTotal += origArray[x+1][y-1].getBlue()/SIXTEENTH;
-
-                            greenTotal += origArray[x][y].getGreen()/FOURTH;
-                            greenTotal += origArray[x][y-1].getGreen()/EIGTH;
-                            greenTotal += origArray[x][y+1].getGreen()/EIGTH;
-                            greenTotal += origArray[x+1][y].getGreen()/EIGTH;
-                            greenTotal += origArray[x+1][y+1].getGreen()/SIXTEENTH;
-                            greenTotal += origArray[x+1][y-1].getGreen()/SIXTEENTH;
-                        }
-                    } else if ((x + 2) > origArray.length) {//no x+1
-                        if ((y-1) < STARTIDX) {//no y -1
-                            redTotal += origArray[x][y].getRed()/FOURTH;
-                            redTotal += origArray[x][y+1].getRed()/EIGTH;
-                            redTotal += origArray[x-1][y].getRed()/EIGTH;
-                            redTotal += origArray[x-1][y+1].getRed()/SIXTEENTH;
-
-                            blueTotal += origArray[x][y].getBlue()/FOURTH;
-                            blueTotal += origArray[x][y+1].getBlue()/EIGTH;
-                            blueTotal += origArray[x-1][y].getBlue()/EIGTH;
-                            blueTotal += origArray[x-1][y+1].getBlue()/SIXTEENTH;
-
-                            greenTotal += origArray[x][y].getGreen()/FOURTH;
-                            greenTotal += origArray[x][y+1].getGreen()/EIGTH;
-                            greenTotal += origArray[x-1][y].getGreen()/EIGTH;
-                            greenTotal += origArray[x-1][y+1].getGreen()/SIXTEENTH;
-                        } else if ((y + 2) > origArray[STARTIDX].length) {//no y +1
-                            redTotal += origArray[x][y].getRed()/FOURTH;
-                            redTotal += origArray[x][y-1].getRed()/EIGTH;
-                            redTotal += origArray[x-1][y].getRed()/EIGTH;
-                            redTotal += origArray[x-1][y-1].getRed()/SIXTEENTH;
-
-                            blueTotal += origArray[x][y].getBlue()/FOURTH;
-                            blueTotal += origArray[x][y-1].getBlue()/EIGTH;
-                            blueTotal += origArray[x-1][y].getBlue()/EIGTH;
-                            blueTotal += origArray[x-1][y-1].getBlue()/SIXTEENTH;
-
-                            greenTotal += origArray[x][y].getGreen()/FOURTH;
-                            greenTotal += origArray[x][y-1].getGreen()/EIGTH;
-                            greenTotal += origArray[x-1][y].getGreen()/EIGTH;
-                            greenTotal += origArray[x-1][y-1].getGreen()/SIXTEENTH;
-                        } else {
-                            redTotal += origArray[x][y].getRed()/FOURTH;
-                            redTotal += origArray[x][y-1].getRed()/EIGTH;
-                            redTotal += origArray[x][y+1].getRed()/EIGTH;
-                            redTotal += origArray[x-1][y].getRed()/EIGTH;
-                            redTotal += origArray[x-1][y+1].getRed()/SIXTEENTH;
-                            redTotal += origArray[x-1][y-1].getRed()/SIXTEENTH;
-
-                            blueTotal += origArray[x][y].getBlue()/FOURTH;
-                            blueTotal += origArray[x][y-1].getBlue()/EIGTH;
-                            blueTotal += origArray[x][y+1].getBlue()/EIGTH;
-                            blueTotal += origArray[x-1][y].getBlue()/EIGTH;
-                            blueTotal += origArray[x-1][y+1].getBlue()/SIXTEENTH;
-                            blueTotal += origArray[x-1][y-1].getBlue()/SIXTEENTH;
-
-                            greenTotal += origArray[x][y].getGreen()/FOURTH;
-                            greenTotal += origArray[x][y-1].getGreen()/EIGTH;
-                            greenTotal += origArray[x][y+1].getGreen()/EIGTH;
-                            greenTotal += origArray[x-1][y].getGreen()/EIGTH;
-                            greenTotal += origArray[x-1][y+1].getGreen()/SIXTEENTH;
-                            greenTotal += origArray[x-1][y-1].getGreen()/SIXTEENTH;
-                        }
-                    } else if ((y - 1) < STARTIDX) {//no y-1
-                        redTotal += origArray[x][y].getRed()/FOURTH;
-                        redTotal += origArray[x-1][y].getRed()/EIGTH;
-                        redTotal += origArray[x+1][y].getRed()/EIGTH;
-                        redTotal += origArray[x][y+1].getRed()/EIGTH;
-                        redTotal += origArray[x+1][y+1].getRed()/SIXTEENTH;
-                        redTotal += origArray[x-1][y+1].getRed()/SIXTEENTH;
-
-                        blueTotal += origArray[x][y].getBlue()/FOURTH;
-                        blueTotal += origArray[x-1][y].getBlue()/EIGTH;
-                        blueTotal += origArray[x+1][y].getBlue()/EIGTH;
-                        blueTotal += origArray[x][y+1].getBlue()/EIGTH;
-                        blueTotal += origArray[x+1][y+1].getBlue()/SIXTEENTH;
-                        blueTotal += origArray[x-1][y+1].getBlue()/SIXTEENTH;
-
-                        greenTotal += origArray[x][y].getGreen()/FOURTH;
-                        greenTotal += origArray[x-1][y].getGreen()/EIGTH;
-                        greenTotal += origArray[x+1][y].getGreen()/EIGTH;
-                        greenTotal += origArray[x][y+1].getGreen()/EIGTH;
-                        greenTotal += origArray[x+1][y+1].getGreen()/SIXTEENTH;
-                        greenTotal += origArray[x-1][y+1].getGreen()/SIXTEENTH;
-                            
-                    } else if ((y + 2) > origArray[STARTIDX].length) {//no y+1
-                        redTotal += origArray[x][y].getRed()/FOURTH;
-                        redTotal += origArray[x-1][y].getRed()/EIGTH;
-                        redTotal += origArray[x+1][y].getRed()/EIGTH;
-                        redTotal += origArray[x][y-1].getRed()/EIGTH;
-                        redTotal += origArray[x+1][y-1].getRed()/SIXTEENTH;
-                        redTotal += origArray[x-1][y-1].getRed()/SIXTEENTH;
-
-                        blueTotal += origArray[x][y].getBlue()/FOURTH;
-                        blueTotal += origArray[x-1][y].getBlue()/EIGTH;
-                        blueTotal += origArray[x+1][y].getBlue()/EIGTH;
-                        blueTotal += origArray[x][y-1].getBlue()/EIGTH;
-                        blueTotal += origArray[x+1][y-1].getBlue()/SIXTEENTH;
-                        blueTotal += origArray[x-1][y-1].getBlue()/SIXTEENTH;
-
-                        greenTotal += origArray[x][y].getGreen()/FOURTH;
-                        greenTotal += origArray[x-1][y].getGreen()/EIGTH;
-                        greenTotal += origArray[x+1][y].getGreen()/EIGTH;
-                        greenTotal += origArray[x][y-1].getGreen()/EIGTH;
-                        greenTotal += origArray[x+1][y-1].getGreen()/SIXTEENTH;
-                        greenTotal += origArray[x-1][y-1].getGreen()/SIXTEENTH;
-                    } else {
-                        redTotal += origArray[x][y].getRed()/FOURTH;
-                        redTotal += origArray[x-1][y].getRed()/EIGTH;
-                        redTotal += origArray[x+1][y].getRed()/EIGTH;
-                        redTotal += origArray[x][y+1].getRed()/EIGTH;
-                        redTotal += origArray[x][y-1].getRed()/EIGTH;
-                        redTotal += origArray[x+1][y+1].getRed()/SIXTEENTH;
-                        redTotal += origArray[x-1][y+1].getRed()/SIXTEENTH;
-                        redTotal += origArray[x+1][y-1].getRed()/SIXTEENTH;
-                        redTotal += origArray[x-1][y-1].getRed()/SIXTEENTH;
-
-                        blueTotal += origArray[x][y].getBlue()/FOURTH;
-                        blueTotal += origArray[x-1][y].getBlue()/EIGTH;
-                        blueTotal += origArray[x+1][y].getBlue()/EIGTH;
-                        blueTotal += origArray[x][y+1].getBlue()/EIGTH;
-                        blueTotal += origArray[x][y-1].getBlue()/EIGTH;
-                        blueTotal += origArray[x+1][y+1].getBlue()/SIXTEENTH;
-                        blueTotal += origArray[x-1][y+1].getBlue()/SIXTEENTH;
-                        blueTotal += origArray[x+1][y-1].getBlue()/SIXTEENTH;
-                        blueTotal += origArray[x-1][y-1].getBlue()/SIXTEENTH;
-
-                        greenTotal += origArray[x][y].getGreen()/FOURTH;
-                        greenTotal += origArray[x-1][y].getGreen()/EIGTH;
-                        greenTotal += origArray[x+1][y].getGreen()/EIGTH;
-                        greenTotal += origArray[x][y+1].getGreen()/EIGTH;
-                        greenTotal += origArray[x][y-1].getGreen()/EIGTH;
-                        greenTotal += origArray[x+1][y+1].getGreen()/SIXTEENTH;
-                        greenTotal += origArray[x-1][y+1].getGreen()/SIXTEENTH;
-                        greenTotal += origArray[x+1][y-1].getGreen()/SIXTEENTH;
-                        greenTotal += origArray[x-1][y-1].getGreen()/SIXTEENTH;
-                    }
-                    motionArray[x][y] = new Color(Math.abs(redTotal), Math.abs(greenTotal), Math.abs(blueTotal));
-                }
-
-            }
+            Convolution.MOTIONBLUR.apply(origArray, motionArray, n.getStartRow(), n.getStartCol(), n.getEndRow(), n.getEndCol());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,466 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: QualityMetrics.java
+ * Description: Class QualityMetrics measures how close an image, such as the
+ * output of quadCompression, is to the original: its mean squared error, peak
+ * signal-to-noise ratio and structural similarity (SSIM). The images are cut
+ * into bands of rows small enough to stay in cache, and every measure is
+ * taken from a band in one visit, so the cost is one sweep through memory.
+ * Bands may be measured in parallel. SSIM is found on the gray level of the
+ * pixels, weighted as Filter.grayscale weighs them, over 8x8 windows placed
+ * every 4 pixels, each built from four 4x4 blocks whose totals are found once.
+ * A heatmap can also be drawn, coloring each leaf of a QuadTree by its error.
+ */
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class QualityMetrics {
+    private static final int TILEPIXELS = 1 << 14; //most pixels in a band, unless a band of BLOCK rows is larger
+    private static final int TASKTILES = 4; //most bands measured by one parallel task
+    private static final int BLOCK = 4; //side of the blocks whose totals make up the SSIM windows
+    private static final int CHANNELS = 3; //color channels of a pixel
+    private static final double MAXVALUE = 255; //maximum value of a color channel, the peak signal of PSNR
+    private static final int REDWEIGHT = 30; //gray level weights of Filter.grayscale, in hundredths
+    private static final int GREENWEIGHT = 59;
+    private static final int BLUEWEIGHT = 11;
+    private static final int GRAYSCALE = REDWEIGHT + GREENWEIGHT + BLUEWEIGHT; //gray levels are kept multiplied by this
+    //SSIM stabilizing constants (0.01 * 255)^2 and (0.03 * 255)^2, for gray levels multiplied by GRAYSCALE
+    private static final double C1 = Math.pow(0.01 * MAXVALUE * GRAYSCALE, 2);
+    private static final double C2 = Math.pow(0.03 * MAXVALUE * GRAYSCALE, 2);
+    private static final double HOTPSNR = 20; //PSNR of a leaf drawn white in a heatmap
+    private static final double COLDPSNR = 50; //PSNR of a leaf drawn black in a heatmap
+    //totals kept for a block or window of gray levels: sum of x, of y, of x^2, of y^2 and of x * y
+    private static final int SUMX = 0;
+    private static final int SUMY = 1;
+    private static final int SUMXX = 2;
+    private static final int SUMYY = 3;
+    private static final int SUMXY = 4;
+    private static final int SUMS = 5;
+
+    private final long pixels; //number of pixels compared
+    private final long[] squaredErrors; //sum of squared differences of the red, green and blue channels
+    private final double ssim; //mean SSIM of the windows
+
+    private QualityMetrics(long pixels, long[] squaredErrors, double ssim) {
+        this.pixels = pixels;
+        this.squaredErrors = squaredErrors;
+        this.ssim = ssim;
+    }
+
+    /**
+     * Measures an image against the original it was made from
+     * @param reference the original image
+     * @param image image to be measured, the same size as reference
+     * @return the measures
+     */
+    public static QualityMetrics measure(Raster reference, Raster image) {
+        return measure(reference, image, false);
+    }
+
+    /**
+     * Measures an image against the original it was made from
+     * @param reference the original image
+     * @param image image to be measured, the same size as reference
+     * @param parallel true to measure bands in parallel
+     * @return the measures
+     */
+    public static QualityMetrics measure(Raster reference, Raster image, boolean parallel) {
+        int rows = reference.rows();
+        int columns = reference.columns();
+        if (image.rows() != rows || image.columns() != columns) {
+            throw new IllegalArgumentException("images to be compared must be the same size");
+        }
+        long pixels = (long) rows * columns;
+        if (rows < 2 * BLOCK || columns < 2 * BLOCK) {
+            //too small for a window, so the whole image is one window
+            Totals totals = new Totals();
+            addSquaredErrors(reference, image, 0, rows, totals);
+            long[] sums = new long[SUMS];
+            addGraySums(reference, image, 0, 0, rows, columns, sums, 0);
+            return new QualityMetrics(pixels, totals.squaredErrors, pixels == 0 ? 1 : ssim(sums, 0, pixels));
+        }
+        int bandRows = Math.max(BLOCK, TILEPIXELS / columns / BLOCK * BLOCK);
+        int bands = (rows + bandRows - 1) / bandRows;
+        Totals totals;
+        if (parallel && bands > TASKTILES) {
+            totals = ForkJoinPool.commonPool().invoke(new MeasureTask(reference, image, bandRows, 0, bands));
+        } else {
+            totals = measure(reference, image, bandRows, 0, bands);
+        }
+        return new QualityMetrics(pixels, totals.squaredErrors, totals.ssimSum / totals.windows);
+    }
+
+    /**
+     * @return mean squared error per color channel
+     */
+    public double mse() {
+        long total = 0;
+        for (long squaredError : squaredErrors) {
+            total += squaredError;
+        }
+        return pixels == 0 ? 0 : total / (CHANNELS * (double) pixels);
+    }
+
+    /**
+     * @param channel 0 for red, 1 for green, 2 for blue
+     * @return mean squared error of one color channel
+     */
+    public double mse(int channel) {
+        return pixels == 0 ? 0 : squaredErrors[channel] / (double) pixels;
+    }
+
+    /**
+     * @return peak signal-to-noise ratio in decibels, infinite if the images are the same
+     */
+    public double psnr() {
+        return psnr(mse());
+    }
+
+    /**
+     * @return mean structural similarity of the gray levels, 1 if the images are the same
+     */
+    public double ssim() { return ssim; }
+
+    @Override
+    public String toString() {
+        double psnr = psnr();
+        return String.format("MSE %.4f, PSNR %s, SSIM %.4f", mse(),
+                Double.isInfinite(psnr) ? "infinite" : String.format("%.2f dB", psnr), ssim);
+    }
+
+    /**
+     * Finds the peak signal-to-noise ratio of an image from its mean squared error
+     * @param mse mean squared error per color channel
+     * @return 10 log10(255^2 / mse) in decibels, infinite if mse is 0
+     */
+    public static double psnr(double mse) {
+        return 10 * Math.log10(MAXVALUE * MAXVALUE / mse);
+    }
+
+    /**
+     * Finds the mean squared error giving a peak signal-to-noise ratio
+     * @param psnr peak signal-to-noise ratio in decibels
+     * @return mean squared error per color channel
+     */
+    public static double mseOf(double psnr) {
+        if (Double.isNaN(psnr)) {
+            throw new IllegalArgumentException("PSNR must be a number");
+        }
+        return MAXVALUE * MAXVALUE / Math.pow(10, psnr / 10);
+    }
+
+    /**
+     * Finds the mean squared error of each leaf of a QuadTree, comparing an
+     * image drawn from the tree with the original
+     * @param tree tree the image was drawn from
+     * @param reference the original image
+     * @param image image drawn from the tree, the same size as reference
+     * @return mean squared error per color channel of each leaf, in the order of tree.regionLeaves
+     */
+    public static double[] leafErrors(QuadTree tree, Raster reference, Raster image) {
+        List<QuadTree.Leaf> leaves = tree.regionLeaves(0, 0, tree.rows(), tree.columns());
+        int[] ref = reference.pixels();
+        int[] img = image.pixels();
+        double[] errors = new double[leaves.size()];
+        for (int l = 0; l < errors.length; l++) {
+            QuadTree.Leaf leaf = leaves.get(l);
+            long total = 0;
+            for (int i = leaf.getStartRow(); i < leaf.getEndRow(); i++) {
+                int r = reference.rowOffset(i);
+                int p = image.rowOffset(i);
+                for (int j = leaf.getStartCol(); j < leaf.getEndCol(); j++) {
+                    total += squaredError(ref[r + j], img[p + j]);
+                }
+            }
+            long area = (long) (leaf.getEndRow() - leaf.getStartRow()) * (leaf.getEndCol() - leaf.getStartCol());
+            errors[l] = total / (CHANNELS * (double) area);
+        }
+        return errors;
+    }
+
+    /**
+     * Draws a heatmap of the error of each leaf of a QuadTree: leaves are
+     * filled from black, at 50 dB PSNR or better, through red and yellow to
+     * white, at 20 dB or worse, on the same scale for every image
+     * @param tree tree the image was drawn from
+     * @param reference the original image
+     * @param image image drawn from the tree, the same size as reference
+     * @return Raster holding the heatmap
+     */
+    public static Raster heatmap(QuadTree tree, Raster reference, Raster image) {
+        Raster heat = new Raster(tree.rows(), tree.columns());
+        List<QuadTree.Leaf> leaves = tree.regionLeaves(0, 0, tree.rows(), tree.columns());
+        double[] errors = leafErrors(tree, reference, image);
+        int[] pixels = heat.pixels();
+        for (int l = 0; l < errors.length; l++) {
+            QuadTree.Leaf leaf = leaves.get(l);
+            int rgb = heatColor(errors[l]);
+            for (int i = leaf.getStartRow(); i < leaf.getEndRow(); i++) {
+                int offset = heat.rowOffset(i);
+                Arrays.fill(pixels, offset + leaf.getStartCol(), offset + leaf.getEndCol(), rgb);
+            }
+        }
+        return heat;
+    }
+
+    /**
+     * Picks the heatmap color of an error
+     * @param mse mean squared error per color channel
+     * @return packed color, black for small errors through red and yellow to white
+     */
+    private static int heatColor(double mse) {
+        double heat = mse == 0 ? 0 : (COLDPSNR - psnr(mse)) / (COLDPSNR - HOTPSNR);
+        int level = (int) Math.round(Math.max(0, Math.min(1, heat)) * CHANNELS * MAXVALUE);
+        int red = Math.min(level, (int) MAXVALUE);
+        int green = Math.max(0, Math.min(level - (int) MAXVALUE, (int) MAXVALUE));
+        int blue = Math.max(0, level - 2 * (int) MAXVALUE);
+        return Raster.pack(red, green, blue);
+    }
+
+    /**
+     * Sums measured over some bands of the images, which are added together
+     */
+    private static class Totals {
+        private final long[] squaredErrors = new long[CHANNELS]; //sum of squared differences of each channel
+        private double ssimSum; //sum of the SSIM of each window
+        private long windows; //number of windows
+
+        private Totals add(Totals other) {
+            for (int c = 0; c < CHANNELS; c++) {
+                squaredErrors[c] += other.squaredErrors[c];
+            }
+            ssimSum += other.ssimSum;
+            windows += other.windows;
+            return this;
+        }
+    }
+
+    /**
+     * Measures a range of bands, each in turn
+     * @param reference the original image
+     * @param image image to be measured
+     * @param bandRows rows in each band, a multiple of BLOCK
+     * @param firstBand index of the first band
+     * @param endBand index after the last band
+     * @return sums over the bands
+     */
+    private static Totals measure(Raster reference, Raster image, int bandRows, int firstBand, int endBand) {
+        Totals totals = new Totals();
+        int blockRows = reference.rows() / BLOCK;
+        int blockColumns = reference.columns() / BLOCK;
+        long[] above = new long[SUMS * blockColumns]; //totals of each block of the upper row of a window
+        long[] below = new long[SUMS * blockColumns]; //totals of each block of the lower row of a window
+        long[] window = new long[SUMS];
+        int aboveRow = -1; //index of the row of blocks held in above
+        for (int band = firstBand; band < endBand; band++) {
+            int firstRow = band * bandRows;
+            int endRow = Math.min(firstRow + bandRows, reference.rows());
+            addSquaredErrors(reference, image, firstRow, endRow, totals);
+            //the band holds the windows whose upper blocks start in it, the last reaching one block below it
+            int firstBlockRow = firstRow / BLOCK;
+            int endBlockRow = Math.min((endRow + BLOCK - 1) / BLOCK, blockRows - 1);
+            if (firstBlockRow < endBlockRow && aboveRow != firstBlockRow) {
+                blockSums(reference, image, firstBlockRow, blockColumns, above);
+            }
+            for (int blockRow = firstBlockRow; blockRow < endBlockRow; blockRow++) {
+                blockSums(reference, image, blockRow + 1, blockColumns, below);
+                for (int blockCol = 0; blockCol + 1 < blockColumns; blockCol++) {
+                    int left = SUMS * blockCol;
+                    for (int s = 0; s < SUMS; s++) {
+                        window[s] = above[left + s] + above[left + SUMS + s] + below[left + s] + below[left + SUMS + s];
+                    }
+                    totals.ssimSum += ssim(window, 0, 4 * BLOCK * BLOCK);
+                    totals.windows++;
+                }
+                long[] swap = above;
+                above = below;
+                below = swap;
+                aboveRow = blockRow + 1;
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Adds the squared differences of each channel over some rows
+     * @param reference the original image
+     * @param image image to be measured
+     * @param firstRow first row
+     * @param endRow row after the last
+     * @param totals sums to be added to
+     */
+    private static void addSquaredErrors(Raster reference, Raster image, int firstRow, int endRow, Totals totals) {
+        int[] ref = reference.pixels();
+        int[] img = image.pixels();
+        long red = 0;
+        long green = 0;
+        long blue = 0;
+        for (int i = firstRow; i < endRow; i++) {
+            int r = reference.rowOffset(i);
+            int p = image.rowOffset(i);
+            for (int j = 0; j < reference.columns(); j++) {
+                int a = ref[r + j];
+                int b = img[p + j];
+                int dr = Raster.red(a) - Raster.red(b);
+                int dg = Raster.green(a) - Raster.green(b);
+                int db = Raster.blue(a) - Raster.blue(b);
+                red += dr * dr;
+                green += dg * dg;
+                blue += db * db;
+            }
+        }
+        totals.squaredErrors[0] += red;
+        totals.squaredErrors[1] += green;
+        totals.squaredErrors[2] += blue;
+    }
+
+    /**
+     * Finds the gray level totals of each block of a row of blocks
+     * @param reference the original image
+     * @param image image to be measured
+     * @param blockRow index of the row of blocks
+     * @param blockColumns number of blocks across the row
+     * @param sums SUMS totals for each block, in order, which are overwritten
+     */
+    private static void blockSums(Raster reference, Raster image, int blockRow, int blockColumns, long[] sums) {
+        Arrays.fill(sums, 0);
+        int[] ref = reference.pixels();
+        int[] img = image.pixels();
+        for (int i = blockRow * BLOCK; i < (blockRow + 1) * BLOCK; i++) {
+            int r = reference.rowOffset(i);
+            int p = image.rowOffset(i);
+            for (int at = 0, j = 0; at < SUMS * blockColumns; at += SUMS, j += BLOCK) {
+                long sumX = 0;
+                long sumY = 0;
+                long sumXX = 0;
+                long sumYY = 0;
+                long sumXY = 0;
+                for (int k = j; k < j + BLOCK; k++) {
+                    long x = gray(ref[r + k]);
+                    long y = gray(img[p + k]);
+                    sumX += x;
+                    sumY += y;
+                    sumXX += x * x;
+                    sumYY += y * y;
+                    sumXY += x * y;
+                }
+                sums[at + SUMX] += sumX;
+                sums[at + SUMY] += sumY;
+                sums[at + SUMXX] += sumXX;
+                sums[at + SUMYY] += sumYY;
+                sums[at + SUMXY] += sumXY;
+            }
+        }
+    }
+
+    /**
+     * Adds the gray level totals of a rectangle of the images
+     * @param reference the original image, whose gray levels are x
+     * @param image image to be measured, whose gray levels are y
+     * @param startRow start row of the rectangle
+     * @param startCol start column of the rectangle
+     * @param endRow end row (exclusive) of the rectangle
+     * @param endCol end column (exclusive) of the rectangle
+     * @param sums totals to be added to
+     * @param at index of the first of the SUMS totals in sums
+     */
+    private static void addGraySums(Raster reference, Raster image, int startRow, int startCol, int endRow, int endCol,
+            long[] sums, int at) {
+        int[] ref = reference.pixels();
+        int[] img = image.pixels();
+        long sumX = 0;
+        long sumY = 0;
+        long sumXX = 0;
+        long sumYY = 0;
+        long sumXY = 0;
+        for (int i = startRow; i < endRow; i++) {
+            int r = reference.rowOffset(i);
+            int p = image.rowOffset(i);
+            for (int j = startCol; j < endCol; j++) {
+                long x = gray(ref[r + j]);
+                long y = gray(img[p + j]);
+                sumX += x;
+                sumY += y;
+                sumXX += x * x;
+                sumYY += y * y;
+                sumXY += x * y;
+            }
+        }
+        sums[at + SUMX] += sumX;
+        sums[at + SUMY] += sumY;
+        sums[at + SUMXX] += sumXX;
+        sums[at + SUMYY] += sumYY;
+        sums[at + SUMXY] += sumXY;
+    }
+
+    /**
+     * @param rgb packed pixel
+     * @return gray level of the pixel, multiplied by GRAYSCALE
+     */
+    private static int gray(int rgb) {
+        return REDWEIGHT * Raster.red(rgb) + GREENWEIGHT * Raster.green(rgb) + BLUEWEIGHT * Raster.blue(rgb);
+    }
+
+    /**
+     * @param a packed pixel
+     * @param b packed pixel
+     * @return sum of the squared differences of the channels of a and b
+     */
+    private static int squaredError(int a, int b) {
+        int dr = Raster.red(a) - Raster.red(b);
+        int dg = Raster.green(a) - Raster.green(b);
+        int db = Raster.blue(a) - Raster.blue(b);
+        return dr * dr + dg * dg + db * db;
+    }
+
+    /**
+     * Finds the SSIM of a window from its gray level totals
+     * @param sums totals of the window
+     * @param at index of the first of the SUMS totals in sums
+     * @param n number of pixels in the window
+     * @return structural similarity of the window, -1 to 1
+     */
+    private static double ssim(long[] sums, int at, long n) {
+        double meanX = (double) sums[at + SUMX] / n;
+        double meanY = (double) sums[at + SUMY] / n;
+        double varianceX = (double) sums[at + SUMXX] / n - meanX * meanX;
+        double varianceY = (double) sums[at + SUMYY] / n - meanY * meanY;
+        double covariance = (double) sums[at + SUMXY] / n - meanX * meanY;
+        return (2 * meanX * meanY + C1) * (2 * covariance + C2)
+                / ((meanX * meanX + meanY * meanY + C1) * (varianceX + varianceY + C2));
+    }
+
+    /**
+     * Task which measures a range of bands, forking halves of it while it
+     * holds more than TASKTILES bands
+     */
+    private static class MeasureTask extends RecursiveTask<Totals> {
+        private static final long serialVersionUID = 1L; //tasks are never serialized, but RecursiveTask is Serializable
+        private final Raster reference; //the original image
+        private final Raster image; //image to be measured
+        private final int bandRows; //rows in each band
+        private final int firstBand; //index of the first band
+        private final int endBand; //index after the last band
+
+        private MeasureTask(Raster reference, Raster image, int bandRows, int firstBand, int endBand) {
+            this.reference = reference;
+            this.image = image;
+            this.bandRows = bandRows;
+            this.firstBand = firstBand;
+            this.endBand = endBand;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (endBand - firstBand <= TASKTILES) {
+                return measure(reference, image, bandRows, firstBand, endBand);
+            }
+            int middle = (firstBand + endBand) >>> 1;
+            MeasureTask upper = new MeasureTask(reference, image, bandRows, firstBand, middle);
+            upper.fork();
+            Totals lower = new MeasureTask(reference, image, bandRows, middle, endBand).compute();
+            return upper.join().add(lower);
+        }
+    }
+}
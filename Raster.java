@@ -0,0 +1,119 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: Raster.java
+ * Description: Class Raster holds an image as one packed int (0xRRGGBB) per
+ * pixel in a single row-major array, replacing a Color[][] of heap objects.
+ * Provides row/column accessors for the whole pixel and for each channel.
+ * A Raster may hold only a band of an image's rows, in which case rows are
+ * still addressed by their row in the whole image.
+ */
+public class Raster {
+    private static final int MAXVALUE = 255; //maximum value of a color channel
+    private static final int REDSHIFT = 16; //bit offset of the red channel
+    private static final int GREENSHIFT = 8; //bit offset of the green channel
+    private static final int CHANNELMASK = 0xFF; //mask for a single channel
+
+    private final int rows; //number of rows in the image
+    private final int columns; //number of columns in the image
+    private final int firstRow; //first row of the image held in pixels
+    private final int endRow; //row after the last row of the image held in pixels
+    private final int[] pixels; //packed pixels, row-major
+
+    public Raster(int rows, int columns) {
+        this(rows, columns, 0, rows);
+    }
+
+    /**
+     * Creates a Raster holding only the rows [firstRow, endRow) of an image
+     * @param rows number of rows in the whole image
+     * @param columns number of columns in the image
+     * @param firstRow first row held
+     * @param endRow row after the last row held
+     */
+    public Raster(int rows, int columns, int firstRow, int endRow) {
+        this.rows = rows;
+        this.columns = columns;
+        this.firstRow = firstRow;
+        this.endRow = endRow;
+        this.pixels = new int[(endRow - firstRow) * columns];
+    }
+
+    public int rows() { return rows; }
+
+    public int columns() { return columns; }
+
+    public int firstRow() { return firstRow; }
+
+    public int endRow() { return endRow; }
+
+    /**
+     * Gives direct access to the packed pixel array, stored row-major
+     * such that pixel (row, col) is at index rowOffset(row) + col
+     * @return backing array of packed pixels
+     */
+    public int[] pixels() { return pixels; }
+
+    /**
+     * Finds where a row starts in the packed pixel array
+     * @param row row of the image, between firstRow() and endRow()
+     * @return index in pixels() of the row's first pixel
+     */
+    public int rowOffset(int row) { return (row - firstRow) * columns; }
+
+    public int getRGB(int row, int col) { return pixels[(row - firstRow) * columns + col]; }
+
+    public void setRGB(int row, int col, int rgb) { pixels[(row - firstRow) * columns + col] = rgb; }
+
+    public int getRed(int row, int col) { return red(getRGB(row, col)); }
+
+    public int getGreen(int row, int col) { return green(getRGB(row, col)); }
+
+    public int getBlue(int row, int col) { return blue(getRGB(row, col)); }
+
+    /**
+     * Sets the pixel at (row, col), clamping each channel to 0-255
+     * @param row row of the pixel
+     * @param col column of the pixel
+     * @param red red value of the pixel
+     * @param green green value of the pixel
+     * @param blue blue value of the pixel
+     */
+    public void set(int row, int col, int red, int green, int blue) {
+        setRGB(row, col, pack(red, green, blue));
+    }
+
+    public Color getColor(int row, int col) {
+        int rgb = getRGB(row, col);
+        return new Color(red(rgb), green(rgb), blue(rgb));
+    }
+
+    public void setColor(int row, int col, Color c) {
+        setRGB(row, col, pack(c));
+    }
+
+    /**
+     * Packs three channel values into a single int, clamping each to 0-255
+     * @param red red value
+     * @param green green value
+     * @param blue blue value
+     * @return packed 0xRRGGBB value
+     */
+    public static int pack(int red, int green, int blue) {
+        return (clamp(red) << REDSHIFT) | (clamp(green) << GREENSHIFT) | clamp(blue);
+    }
+
+    public static int pack(Color c) { return pack(c.getRed(), c.getGreen(), c.getBlue()); }
+
+    public static int red(int rgb) { return (rgb >> REDSHIFT) & CHANNELMASK; }
+
+    public static int green(int rgb) { return (rgb >> GREENSHIFT) & CHANNELMASK; }
+
+    public static int blue(int rgb) { return rgb & CHANNELMASK; }
+
+    private static int clamp(int value) {
+        if (value < 0) {
+            return 0;
+        }
+        return value > MAXVALUE ? MAXVALUE : value;
+    }
+}
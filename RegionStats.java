@@ -0,0 +1,55 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: RegionStats.java
+ * Description: Interface RegionStats gives the channel totals of rectangles of an
+ * image, from which QuadTree finds the average color and squared error of a Node.
+ */
+public interface RegionStats {
+    /**
+     * @return number of rows in the whole image
+     */
+    int rows();
+
+    /**
+     * @return number of columns in the image
+     */
+    int columns();
+
+    long sumRed(int startRow, int startCol, int endRow, int endCol);
+
+    long sumGreen(int startRow, int startCol, int endRow, int endCol);
+
+    long sumBlue(int startRow, int startCol, int endRow, int endCol);
+
+    /**
+     * Finds the total of red^2 + green^2 + blue^2 over a range of pixels
+     * @param startRow start row of pixel range
+     * @param startCol start column of pixel range
+     * @param endRow end row (exclusive) of pixel range
+     * @param endCol end column (exclusive) of pixel range
+     * @return total of the squared channel values
+     */
+    long sumSquares(int startRow, int startCol, int endRow, int endCol);
+
+    /**
+     * Finds the summed squared distance between every pixel in a range and
+     * a given color, i.e. the total of (r - red)^2 + (g - green)^2 + (b - blue)^2
+     * @param startRow start row of pixel range
+     * @param startCol start column of pixel range
+     * @param endRow end row (exclusive) of pixel range
+     * @param endCol end column (exclusive) of pixel range
+     * @param c color to measure the distance from
+     * @return summed squared distance of the range from c
+     */
+    default long squaredError(int startRow, int startCol, int endRow, int endCol, Color c) {
+        long area = (long) (endRow - startRow) * (endCol - startCol);
+        long r = c.getRed();
+        long g = c.getGreen();
+        long b = c.getBlue();
+        return sumSquares(startRow, startCol, endRow, endCol)
+                - 2 * (r * sumRed(startRow, startCol, endRow, endCol)
+                    + g * sumGreen(startRow, startCol, endRow, endCol)
+                    + b * sumBlue(startRow, startCol, endRow, endCol))
+                + area * (r * r + g * g + b * b);
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: ScalarKernels.java
+ * Description: Class ScalarKernels implements PixelKernels one pixel at a time
+ * using integer arithmetic. It is used when the vector kernels are unavailable,
+ * and by them for the pixels left over after the last full vector. Grayscale
+ * weighs the channels in fixed point, and a tint of many pixels is done
+ * through lookup tables built once per call.
+ */
+public class ScalarKernels implements PixelKernels {
+    private static final int MAXVALUE = 255; //maximum value of a color channel
+    private static final int RGBMASK = 0xFFFFFF; //mask for the three channels of a packed pixel
+    private static final int VALUES = 256; //number of values of a color channel
+    private static final int REDSHIFT = 16; //bit offset of the red channel
+    private static final int GREENSHIFT = 8; //bit offset of the green channel
+    private static final int GRAYPIXEL = 0x010101; //multiplier copying a channel value to all three channels
+    //(x * 5243) >>> 19 equals x / 100 for every x in [0, 25500], so the luminance
+    //weights 30, 59 and 11 are scaled by 5243 and the sum shifted instead of divided
+    private static final int REDWEIGHT = 30 * 5243;
+    private static final int GREENWEIGHT = 59 * 5243;
+    private static final int BLUEWEIGHT = 11 * 5243;
+    private static final int WEIGHTSHIFT = 19;
+    private static final int TABLEPIXELS = 1024; //fewest pixels for which a tint builds lookup tables
+
+    @Override
+    public String name() { return "scalar"; }
+
+    @Override
+    public void negative(int[] pixels, int from, int to) {
+        for (int i = from; i < to; i++) {
+            pixels[i] = ~pixels[i] & RGBMASK;
+        }
+    }
+
+    @Override
+    public void grayscale(int[] pixels, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int rgb = pixels[i];
+            int gray = (REDWEIGHT * Raster.red(rgb) + GREENWEIGHT * Raster.green(rgb) + BLUEWEIGHT * Raster.blue(rgb)) >>> WEIGHTSHIFT;
+            pixels[i] = gray * GRAYPIXEL;
+        }
+    }
+
+    @Override
+    public void tint(int[] pixels, int from, int to, int red, int green, int blue) {
+        if (to - from >= TABLEPIXELS) {
+            int[] redTable = new int[VALUES];
+            int[] greenTable = new int[VALUES];
+            int[] blueTable = new int[VALUES];
+            for (int v = 0; v < VALUES; v++) {
+                redTable[v] = tinted(v, red) << REDSHIFT;
+                greenTable[v] = tinted(v, green) << GREENSHIFT;
+                blueTable[v] = tinted(v, blue);
+            }
+            lookup(pixels, from, to, redTable, greenTable, blueTable);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            int rgb = pixels[i];
+            pixels[i] = Raster.pack(Raster.red(rgb) * red / MAXVALUE,
+                    Raster.green(rgb) * green / MAXVALUE,
+                    Raster.blue(rgb) * blue / MAXVALUE);
+        }
+    }
+
+    /**
+     * Scales a channel value by tint / 255 as the per-pixel tint does,
+     * clamping it to 0-255 for tints outside that range
+     * @param value channel value, 0-255
+     * @param tint value of the tint for the channel
+     * @return new channel value
+     */
+    private static int tinted(int value, int tint) {
+        return Math.max(0, Math.min(MAXVALUE, value * tint / MAXVALUE));
+    }
+
+    @Override
+    public void lookup(int[] pixels, int from, int to, int[] red, int[] green, int[] blue) {
+        for (int i = from; i < to; i++) {
+            int rgb = pixels[i];
+            pixels[i] = red[Raster.red(rgb)] | green[Raster.green(rgb)] | blue[Raster.blue(rgb)];
+        }
+    }
+
+    @Override
+    public void convolve(int[] in, int inStart, int[] out, int outStart, int count, int[] offsets, int[] weights, int[] shifts) {
+        int taps = offsets.length;
+        for (int y = 0; y < count; y++) {
+            int redTotal = 0;
+            int greenTotal = 0;
+            int blueTotal = 0;
+            for (int t = 0; t < taps; t++) {
+                int rgb = in[inStart + y + offsets[t]];
+                redTotal += (Raster.red(rgb) * weights[t]) >> shifts[t];
+                greenTotal += (Raster.green(rgb) * weights[t]) >> shifts[t];
+                blueTotal += (Raster.blue(rgb) * weights[t]) >> shifts[t];
+            }
+            out[outStart + y] = Raster.pack(Math.abs(redTotal), Math.abs(greenTotal), Math.abs(blueTotal));
+        }
+    }
+}
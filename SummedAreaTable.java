@@ -0,0 +1,119 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: SummedAreaTable.java
+ * Description: Class SummedAreaTable holds integral images of each color channel
+ * and of the squared channel values of a Raster, so that the sum, average and
+ * squared error of any rectangle of pixels can be found with four lookups.
+ * If the Raster holds a band of rows, only rectangles inside the band can be found.
+ * The channel totals are kept as ints when every total fits in one, on images
+ * of up to about 8 million pixels, which saves 12 bytes per pixel.
+ */
+public class SummedAreaTable implements RegionStats {
+    private static final int MAXVALUE = 255; //maximum value of a color channel
+
+    private final Raster image; //image the table was built from
+    private final int firstRow; //first image row covered by the tables
+    private final int stride; //width of a row in the tables, one more than the image columns
+    private final int[] red; //red[(i * stride) + j] is the red total of rows [firstRow, firstRow + i) and columns [0, j), or null if wide
+    private final int[] green; //green totals, laid out the same as red, or null if wide
+    private final int[] blue; //blue totals, laid out the same as red, or null if wide
+    private final long[] wideRed; //red totals, for images whose totals may not fit in an int, or null
+    private final long[] wideGreen; //green totals, for images whose totals may not fit in an int, or null
+    private final long[] wideBlue; //blue totals, for images whose totals may not fit in an int, or null
+    private final long[] squares; //totals of red^2 + green^2 + blue^2, laid out the same as red
+
+    public SummedAreaTable(Raster image) {
+        this.image = image;
+        firstRow = image.firstRow();
+        int rows = image.endRow() - image.firstRow();
+        int columns = image.columns();
+        stride = columns + 1;
+        int size = (rows + 1) * stride;
+        boolean wide = (long) rows * columns * MAXVALUE > Integer.MAX_VALUE;
+        red = wide ? null : new int[size];
+        green = wide ? null : new int[size];
+        blue = wide ? null : new int[size];
+        wideRed = wide ? new long[size] : null;
+        wideGreen = wide ? new long[size] : null;
+        wideBlue = wide ? new long[size] : null;
+        squares = new long[size];
+
+        int[] pixels = image.pixels();
+        for (int i = 0; i < rows; i++) {
+            long redRow = 0;
+            long greenRow = 0;
+            long blueRow = 0;
+            long squaresRow = 0;
+            int above = i * stride;
+            int here = above + stride;
+            for (int j = 0; j < columns; j++) {
+                int rgb = pixels[i * columns + j];
+                int r = Raster.red(rgb);
+                int g = Raster.green(rgb);
+                int b = Raster.blue(rgb);
+                redRow += r;
+                greenRow += g;
+                blueRow += b;
+                squaresRow += r * r + g * g + b * b;
+                if (wide) {
+                    wideRed[here + j + 1] = wideRed[above + j + 1] + redRow;
+                    wideGreen[here + j + 1] = wideGreen[above + j + 1] + greenRow;
+                    wideBlue[here + j + 1] = wideBlue[above + j + 1] + blueRow;
+                } else {
+                    red[here + j + 1] = red[above + j + 1] + (int) redRow;
+                    green[here + j + 1] = green[above + j + 1] + (int) greenRow;
+                    blue[here + j + 1] = blue[above + j + 1] + (int) blueRow;
+                }
+                squares[here + j + 1] = squares[above + j + 1] + squaresRow;
+            }
+        }
+    }
+
+    public Raster image() { return image; }
+
+    @Override
+    public int rows() { return image.rows(); }
+
+    @Override
+    public int columns() { return image.columns(); }
+
+    @Override
+    public long sumRed(int startRow, int startCol, int endRow, int endCol) {
+        return red != null ? sum(red, startRow, startCol, endRow, endCol) : sum(wideRed, startRow, startCol, endRow, endCol);
+    }
+
+    @Override
+    public long sumGreen(int startRow, int startCol, int endRow, int endCol) {
+        return green != null ? sum(green, startRow, startCol, endRow, endCol) : sum(wideGreen, startRow, startCol, endRow, endCol);
+    }
+
+    @Override
+    public long sumBlue(int startRow, int startCol, int endRow, int endCol) {
+        return blue != null ? sum(blue, startRow, startCol, endRow, endCol) : sum(wideBlue, startRow, startCol, endRow, endCol);
+    }
+
+    /**
+     * Finds the total of red^2 + green^2 + blue^2 over a range of pixels
+     * @param startRow start row of pixel range
+     * @param startCol start column of pixel range
+     * @param endRow end row (exclusive) of pixel range
+     * @param endCol end column (exclusive) of pixel range
+     * @return total of the squared channel values
+     */
+    @Override
+    public long sumSquares(int startRow, int startCol, int endRow, int endCol) {
+        return sum(squares, startRow, startCol, endRow, endCol);
+    }
+
+    private long sum(long[] table, int startRow, int startCol, int endRow, int endCol) {
+        int top = (startRow - firstRow) * stride;
+        int bottom = (endRow - firstRow) * stride;
+        return table[bottom + endCol] - table[top + endCol] - table[bottom + startCol] + table[top + startCol];
+    }
+
+    private long sum(int[] table, int startRow, int startCol, int endRow, int endCol) {
+        int top = (startRow - firstRow) * stride;
+        int bottom = (endRow - firstRow) * stride;
+        return table[bottom + endCol] - table[top + endCol] - table[bottom + startCol] + table[top + startCol];
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: TileGridStats.java
+ * Description: Class TileGridStats collects the channel totals of an image one band
+ * of rows at a time, over the grid of tiles formed by the QuadTree Node boundaries
+ * down to a given depth. Once every row has been added, the totals of any Node
+ * down to that depth can be found without holding the image in memory.
+ */
+
+import java.util.*;
+
+public class TileGridStats implements RegionStats {
+    private final int rows; //number of rows in the image
+    private final int columns; //number of columns in the image
+    private final int[] rowBounds; //sorted row boundaries of the Nodes down to the grid depth
+    private final int[] colBounds; //sorted column boundaries of the Nodes down to the grid depth
+    private final int[] tileOfColumn; //index of the grid column holding each image column
+    private final int stride; //width of a row in the tables, one more than the grid columns
+    private final long[] red; //per tile totals while rows are added, then integral tables over the grid
+    private final long[] green; //green totals, laid out the same as red
+    private final long[] blue; //blue totals, laid out the same as red
+    private final long[] squares; //totals of red^2 + green^2 + blue^2, laid out the same as red
+    private boolean finished; //true once the tables have been integrated
+
+    /**
+     * Creates an empty grid for an image
+     * @param rows number of rows in the image
+     * @param columns number of columns in the image
+     * @param depth depth of the QuadTree Nodes forming the tiles
+     */
+    public TileGridStats(int rows, int columns, int depth) {
+        this.rows = rows;
+        this.columns = columns;
+        rowBounds = bounds(rows, depth);
+        colBounds = bounds(columns, depth);
+        tileOfColumn = new int[columns];
+        for (int t = 0; t < colBounds.length - 1; t++) {
+            for (int j = colBounds[t]; j < colBounds[t + 1]; j++) {
+                tileOfColumn[j] = t;
+            }
+        }
+        stride = colBounds.length;
+        red = new long[rowBounds.length * stride];
+        green = new long[rowBounds.length * stride];
+        blue = new long[rowBounds.length * stride];
+        squares = new long[rowBounds.length * stride];
+    }
+
+    /**
+     * Finds the boundaries QuadTree gives a length when halving it down to a depth
+     * @param length number of rows or columns
+     * @param depth number of times each section is halved
+     * @return sorted, distinct boundaries, starting with 0 and ending with length
+     */
+    public static int[] bounds(int length, int depth) {
+        TreeSet<Integer> bounds = new TreeSet<>();
+        bounds.add(0);
+        bounds.add(length);
+        for (int d = 0; d < depth; d++) {
+            Integer[] current = bounds.toArray(new Integer[0]);
+            for (int i = 0; i < current.length - 1; i++) {
+                bounds.add((current[i + 1] - current[i]) / 2 + current[i]);
+            }
+        }
+        int[] result = new int[bounds.size()];
+        int i = 0;
+        for (int b : bounds) {
+            result[i++] = b;
+        }
+        return result;
+    }
+
+    /**
+     * @return sorted row boundaries of the tiles, starting with 0 and ending with rows()
+     */
+    public int[] rowBounds() { return rowBounds.clone(); }
+
+    @Override
+    public int rows() { return rows; }
+
+    @Override
+    public int columns() { return columns; }
+
+    /**
+     * Adds rows of the image to the totals of the tiles holding them
+     * @param band Raster holding the rows
+     * @param firstRow first row to be added
+     * @param count number of rows to be added
+     */
+    public void addRows(Raster band, int firstRow, int count) {
+        if (finished) {
+            throw new IllegalStateException("rows added after the grid was finished");
+        }
+        int[] pixels = band.pixels();
+        int tileRow = Arrays.binarySearch(rowBounds, firstRow);
+        if (tileRow < 0) {
+            tileRow = -tileRow - 2;
+        }
+        for (int i = firstRow; i < firstRow + count; i++) {
+            while (rowBounds[tileRow + 1] <= i) {
+                tileRow++;
+            }
+            int offset = band.rowOffset(i);
+            int tile = tileRow * stride;
+            for (int j = 0; j < columns; j++) {
+                int rgb = pixels[offset + j];
+                int r = Raster.red(rgb);
+                int g = Raster.green(rgb);
+                int b = Raster.blue(rgb);
+                int t = tile + tileOfColumn[j];
+                red[t] += r;
+                green[t] += g;
+                blue[t] += b;
+                squares[t] += r * r + g * g + b * b;
+            }
+        }
+    }
+
+    /**
+     * Turns the per tile totals into integral tables, after which totals
+     * of whole tiles and of Nodes made of them can be found
+     */
+    public void finish() {
+        integrate(red);
+        integrate(green);
+        integrate(blue);
+        integrate(squares);
+        finished = true;
+    }
+
+    @Override
+    public long sumRed(int startRow, int startCol, int endRow, int endCol) {
+        return sum(red, startRow, startCol, endRow, endCol);
+    }
+
+    @Override
+    public long sumGreen(int startRow, int startCol, int endRow, int endCol) {
+        return sum(green, startRow, startCol, endRow, endCol);
+    }
+
+    @Override
+    public long sumBlue(int startRow, int startCol, int endRow, int endCol) {
+        return sum(blue, startRow, startCol, endRow, endCol);
+    }
+
+    @Override
+    public long sumSquares(int startRow, int startCol, int endRow, int endCol) {
+        return sum(squares, startRow, startCol, endRow, endCol);
+    }
+
+    /**
+     * Shifts per tile totals down and right by one and integrates them, so that
+     * table[i * stride + j] holds the total of tile rows [0, i) and tile columns [0, j)
+     * @param table per tile totals, with tile (i, j) at i * stride + j
+     */
+    private void integrate(long[] table) {
+        int tileRows = rowBounds.length - 1;
+        int tileCols = colBounds.length - 1;
+        for (int i = tileRows; i >= 1; i--) {
+            for (int j = tileCols; j >= 1; j--) {
+                table[i * stride + j] = table[(i - 1) * stride + (j - 1)];
+            }
+            table[i * stride] = 0;
+        }
+        for (int j = 0; j < stride; j++) {
+            table[j] = 0;
+        }
+        for (int i = 1; i <= tileRows; i++) {
+            for (int j = 1; j <= tileCols; j++) {
+                table[i * stride + j] += table[(i - 1) * stride + j] + table[i * stride + j - 1]
+                        - table[(i - 1) * stride + j - 1];
+            }
+        }
+    }
+
+    private long sum(long[] table, int startRow, int startCol, int endRow, int endCol) {
+        if (!finished) {
+            throw new IllegalStateException("grid totals used before the grid was finished");
+        }
+        int top = boundIndex(rowBounds, startRow) * stride;
+        int bottom = boundIndex(rowBounds, endRow) * stride;
+        int left = boundIndex(colBounds, startCol);
+        int right = boundIndex(colBounds, endCol);
+        return table[bottom + right] - table[top + right] - table[bottom + left] + table[top + left];
+    }
+
+    /**
+     * Finds the index of a boundary among the tile boundaries
+     * @param bounds sorted tile boundaries
+     * @param value boundary to be found
+     * @return index of value in bounds
+     */
+    private static int boundIndex(int[] bounds, int value) {
+        int index = Arrays.binarySearch(bounds, value);
+        if (index < 0) {
+            throw new IllegalArgumentException(value + " is not on a tile boundary");
+        }
+        return index;
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: ToneCurve.java
+ * Description: Class ToneCurve maps each color channel of a pixel to a new
+ * value through a 256-entry lookup table per channel, built once when the
+ * curve is made. Any per-channel point filter can be written as a curve:
+ * the negative and tint filters, gamma, levels and contrast adjustments, or
+ * a user-defined function. Applying a curve costs three table lookups per
+ * pixel whatever the function, and two curves compose exactly into one.
+ */
+
+import java.util.function.*;
+
+public class ToneCurve {
+    private static final int VALUES = 256; //number of values of a color channel
+    private static final int MAXVALUE = 255; //maximum value of a color channel
+    private static final int MIDVALUE = 128; //value about which contrast is scaled
+    private static final int REDSHIFT = 16; //bit offset of the red channel
+    private static final int GREENSHIFT = 8; //bit offset of the green channel
+
+    private final int[] red; //red[v] is the new red value of a pixel with red value v, shifted into place
+    private final int[] green; //new green values, shifted into place
+    private final int[] blue; //new blue values
+
+    /**
+     * Creates a curve from a table for each channel
+     * @param red new red value for each red value, 0-255
+     * @param green new green value for each green value, 0-255
+     * @param blue new blue value for each blue value, 0-255
+     */
+    private ToneCurve(int[] red, int[] green, int[] blue) {
+        this.red = new int[VALUES];
+        this.green = new int[VALUES];
+        this.blue = new int[VALUES];
+        for (int v = 0; v < VALUES; v++) {
+            this.red[v] = red[v] << REDSHIFT;
+            this.green[v] = green[v] << GREENSHIFT;
+            this.blue[v] = blue[v];
+        }
+    }
+
+    /**
+     * Creates a curve applying the same function to every channel
+     * @param f function from a channel value, 0-255, to its new value, which is clamped to 0-255
+     * @return the curve
+     */
+    public static ToneCurve of(IntUnaryOperator f) {
+        return of(f, f, f);
+    }
+
+    /**
+     * Creates a curve applying a function to each channel
+     * @param red function from a red value, 0-255, to its new value, which is clamped to 0-255
+     * @param green function for the green channel
+     * @param blue function for the blue channel
+     * @return the curve
+     */
+    public static ToneCurve of(IntUnaryOperator red, IntUnaryOperator green, IntUnaryOperator blue) {
+        return new ToneCurve(table(red), table(green), table(blue));
+    }
+
+    /**
+     * @return curve which leaves every pixel as it is
+     */
+    public static ToneCurve identity() {
+        return of(v -> v);
+    }
+
+    /**
+     * @return curve giving the same pixels as Filter.negative
+     */
+    public static ToneCurve negative() {
+        return of(v -> MAXVALUE - v);
+    }
+
+    /**
+     * Creates a curve giving the same pixels as Filter.tint
+     * @param tint Color to be used as the tint
+     * @return the curve
+     */
+    public static ToneCurve tint(Color tint) {
+        return of(v -> v * tint.getRed() / MAXVALUE, v -> v * tint.getGreen() / MAXVALUE, v -> v * tint.getBlue() / MAXVALUE);
+    }
+
+    /**
+     * Creates a gamma correction curve, 255 * (v / 255) ^ (1 / gamma), rounded
+     * @param gamma gamma of the correction; above 1 lightens, below 1 darkens
+     * @return the curve
+     */
+    public static ToneCurve gamma(double gamma) {
+        if (!(gamma > 0)) {
+            throw new IllegalArgumentException("gamma must be positive");
+        }
+        return of(v -> (int) Math.round(MAXVALUE * Math.pow((double) v / MAXVALUE, 1 / gamma)));
+    }
+
+    /**
+     * Creates a levels curve, stretching the values from black to white over
+     * the full range, so values at or below black become 0 and values at or
+     * above white become 255
+     * @param black value mapped to 0
+     * @param white value mapped to 255, greater than black
+     * @return the curve
+     */
+    public static ToneCurve levels(int black, int white) {
+        if (black < 0 || white > MAXVALUE || black >= white) {
+            throw new IllegalArgumentException("levels need 0 <= black < white <= 255");
+        }
+        return of(v -> ((v - black) * MAXVALUE + (white - black) / 2) / (white - black));
+    }
+
+    /**
+     * Creates a contrast curve, scaling each value's distance from the middle
+     * value 128 by amount, rounded
+     * @param amount scale of the contrast; above 1 increases it, below 1 decreases it
+     * @return the curve
+     */
+    public static ToneCurve contrast(double amount) {
+        if (!(amount >= 0)) {
+            throw new IllegalArgumentException("contrast must not be negative");
+        }
+        return of(v -> (int) Math.round((v - MIDVALUE) * amount + MIDVALUE));
+    }
+
+    /**
+     * Creates the curve which applies this curve, then another
+     * @param next curve applied to the output of this one
+     * @return the composite curve
+     */
+    public ToneCurve then(ToneCurve next) {
+        int[] r = new int[VALUES];
+        int[] g = new int[VALUES];
+        int[] b = new int[VALUES];
+        for (int v = 0; v < VALUES; v++) {
+            r[v] = next.red[red[v] >>> REDSHIFT] >>> REDSHIFT;
+            g[v] = next.green[green[v] >>> GREENSHIFT] >>> GREENSHIFT;
+            b[v] = next.blue[blue[v]];
+        }
+        return new ToneCurve(r, g, b);
+    }
+
+    /**
+     * Maps one packed pixel through the curve
+     * @param rgb packed pixel
+     * @return packed pixel with each channel mapped
+     */
+    public int map(int rgb) {
+        return red[Raster.red(rgb)] | green[Raster.green(rgb)] | blue[Raster.blue(rgb)];
+    }
+
+    /**
+     * Maps each pixel in a span through the curve
+     * @param pixels packed pixels
+     * @param from first index of the span
+     * @param to end index (exclusive) of the span
+     */
+    public void apply(int[] pixels, int from, int to) {
+        PixelKernels.INSTANCE.lookup(pixels, from, to, red, green, blue);
+    }
+
+    /**
+     * @return true if the curve leaves every pixel as it is
+     */
+    public boolean isIdentity() {
+        for (int v = 0; v < VALUES; v++) {
+            if (red[v] != v << REDSHIFT || green[v] != v << GREENSHIFT || blue[v] != v) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the curve maps every channel the same way, so it
+     * keeps gray pixels gray
+     */
+    public boolean isNeutral() {
+        for (int v = 0; v < VALUES; v++) {
+            if (red[v] >>> REDSHIFT != blue[v] || green[v] >>> GREENSHIFT != blue[v]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the table of a function, clamping its values to 0-255
+     * @param f function from a channel value to its new value
+     * @return new value for each channel value
+     */
+    private static int[] table(IntUnaryOperator f) {
+        int[] table = new int[VALUES];
+        for (int v = 0; v < VALUES; v++) {
+            table[v] = Math.max(0, Math.min(MAXVALUE, f.applyAsInt(v)));
+        }
+        return table;
+    }
+}
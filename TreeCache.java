@@ -0,0 +1,359 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: TreeCache.java
+ * Description: Class TreeCache keeps built QuadTrees in a directory, so an
+ * image processed again is not divided again. Each tree is stored as a
+ * level-ordered .qtc file, which holds the color of every Node and so gives
+ * back the same tree, named by a SHA-256 hash of the image's pixels and the
+ * compression level and error threshold it was divided with. A second, small
+ * file named by a hash of the input file's bytes and the same parameters
+ * points to the tree, so a tree can be found from the input file before it
+ * is parsed. Trees are evicted least recently used first, once the
+ * directory holds more than its size cap. Files are written under temporary
+ * names and moved into place, so several runs may share a directory; they
+ * are made readable by every user and writable by the group, so the runs
+ * need not be by the same user. A file's use is recorded by moving a fresh,
+ * empty .use file into place beside it, as only a file's owner may set its
+ * times but any group writer may replace a file in the directory. This does
+ * not hold in a directory with the sticky bit set, such as /tmp, where only
+ * the owner may replace a file. A temporary file left by a run which died is
+ * deleted once it is an hour old.
+ */
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.security.*;
+import java.util.*;
+
+public class TreeCache {
+    private static final String VERSION = "QuadTree cache 1"; //hashed into every key, to be changed if the trees built change
+    private static final String TREEEXTENSION = ".qtc"; //extension of the files holding trees
+    private static final String FILEEXTENSION = ".ref"; //extension of the files naming the tree of an input file
+    private static final String TEMPORARYEXTENSION = ".tmp"; //extension of files still being written
+    private static final String USEEXTENSION = ".use"; //extension added to a file's name for the marker of its last use
+    private static final long TEMPORARYMILLIS = 60 * 60 * 1000; //age at which a temporary file is taken to be abandoned
+    private static final int HASHBUFFER = 1 << 16; //bytes hashed at a time
+    private static final String FILEPERMISSIONS = "rw-rw-r--"; //permissions of the files of the cache
+    private static final String DIRECTORYPERMISSIONS = "rwxrwxr-x"; //permissions of a directory created for the cache
+
+    private final Path directory; //directory holding the cache
+    private final long maxBytes; //most bytes the cache may hold
+
+    /**
+     * Opens a cache, creating its directory if it does not exist
+     * @param directory directory holding the cache
+     * @param maxBytes most bytes the cache may hold before trees are evicted
+     * @throws IOException if the directory cannot be created
+     * @throws IllegalArgumentException if maxBytes is negative
+     */
+    public TreeCache(String directory, long maxBytes) throws IOException {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative");
+        }
+        Path path = Paths.get(directory);
+        if (!Files.isDirectory(path)) {
+            Files.createDirectories(path);
+            share(path, DIRECTORYPERMISSIONS);
+        }
+        this.directory = path;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Finds the key of the tree of an image
+     * @param image image the tree is built from
+     * @param compressionLevel compression level the tree is divided with
+     * @param maxAcceptableError error threshold the tree is divided with
+     * @return hex SHA-256 of the image's size and pixels and the parameters
+     */
+    public static String key(Raster image, double compressionLevel, double maxAcceptableError) {
+        MessageDigest digest = newDigest(compressionLevel, maxAcceptableError);
+        byte[] buffer = new byte[HASHBUFFER];
+        int length = 0;
+        buffer[length++] = 'P';
+        length = putInt(buffer, length, image.rows());
+        length = putInt(buffer, length, image.columns());
+        int[] pixels = image.pixels();
+        for (int i = image.rowOffset(image.firstRow()); i < image.rowOffset(image.endRow()); i++) {
+            if (length > buffer.length - Integer.BYTES) {
+                digest.update(buffer, 0, length);
+                length = 0;
+            }
+            length = putInt(buffer, length, pixels[i]);
+        }
+        digest.update(buffer, 0, length);
+        return hex(digest.digest());
+    }
+
+    /**
+     * Finds the key of an input file, under which the key of its tree is kept
+     * @param fileName image file, in any format Main reads
+     * @param compressionLevel compression level the tree is divided with
+     * @param maxAcceptableError error threshold the tree is divided with
+     * @return hex SHA-256 of the file's bytes and the parameters
+     * @throws IOException if the file cannot be read
+     */
+    public static String fileKey(String fileName, double compressionLevel, double maxAcceptableError) throws IOException {
+        MessageDigest digest = newDigest(compressionLevel, maxAcceptableError);
+        digest.update((byte) 'F');
+        byte[] buffer = new byte[HASHBUFFER];
+        try (InputStream in = Files.newInputStream(Paths.get(fileName))) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * Loads a tree from the cache, marking it as just used
+     * @param key key of the tree, see key
+     * @return the tree, or null if the cache does not hold it
+     */
+    public QuadTree get(String key) {
+        Path file = directory.resolve(key + TREEEXTENSION);
+        try {
+            QuadTree tree = QtcReader.read(file.toString());
+            touch(file);
+            return tree;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            //a damaged file is a miss, and is dropped so it can be written again
+            delete(file);
+            return null;
+        }
+    }
+
+    /**
+     * Loads the tree of an input file from the cache, without reading the image
+     * @param fileKey key of the input file, see fileKey
+     * @return the tree, or null if the cache does not hold it
+     */
+    public QuadTree getByFile(String fileKey) {
+        Path file = directory.resolve(fileKey + FILEEXTENSION);
+        try {
+            String key = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim();
+            QuadTree tree = get(key);
+            if (tree != null) {
+                touch(file);
+            }
+            return tree;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores a tree in the cache. The cache may go over its size cap until
+     * evict is called.
+     * @param key key of the tree, see key
+     * @param tree tree to be stored
+     * @throws IOException if the tree cannot be written
+     */
+    public void put(String key, QuadTree tree) throws IOException {
+        Path temporary = Files.createTempFile(directory, key, TEMPORARYEXTENSION);
+        try {
+            QtcWriter.write(temporary.toString(), tree, true);
+            share(temporary, FILEPERMISSIONS);
+            Files.move(temporary, directory.resolve(key + TREEEXTENSION), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            delete(temporary);
+        }
+    }
+
+    /**
+     * Records which tree belongs to an input file, so getByFile can find it.
+     * The cache may go over its size cap until evict is called.
+     * @param fileKey key of the input file, see fileKey
+     * @param key key of the tree, see key
+     * @throws IOException if the record cannot be written
+     */
+    public void putFile(String fileKey, String key) throws IOException {
+        Path file = directory.resolve(fileKey + FILEEXTENSION);
+        Path temporary = Files.createTempFile(directory, fileKey, TEMPORARYEXTENSION);
+        try {
+            Files.write(temporary, key.getBytes(StandardCharsets.US_ASCII));
+            share(temporary, FILEPERMISSIONS);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            delete(temporary);
+        }
+    }
+
+    /**
+     * Deletes temporary files abandoned by runs which died, then the least
+     * recently used files until the cache holds at most maxBytes, to be
+     * called once after storing. A file was last used when it or its .use
+     * marker was last written, whichever is later. Temporary files still
+     * being written count towards the size but are not deleted, and markers
+     * of files no longer in the cache are dropped. Files deleted meanwhile
+     * by another run sharing the directory are skipped.
+     * @throws IOException if the directory cannot be listed
+     */
+    public void evict() throws IOException {
+        List<Path> files = new ArrayList<>();
+        Map<Path, FileTime> used = new HashMap<>();
+        Map<Path, Long> sizes = new HashMap<>();
+        Map<Path, FileTime> markers = new HashMap<>(); //time each marked file was last used, by file
+        long total = 0;
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(directory)) {
+            for (Path file : dir) {
+                String name = file.getFileName().toString();
+                boolean temporary = name.endsWith(TEMPORARYEXTENSION);
+                boolean marker = name.endsWith(USEEXTENSION);
+                if (!name.endsWith(TREEEXTENSION) && !name.endsWith(FILEEXTENSION) && !temporary && !marker) {
+                    continue;
+                }
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (marker) {
+                        markers.put(file.resolveSibling(name.substring(0, name.length() - USEEXTENSION.length())),
+                                attributes.lastModifiedTime());
+                        continue;
+                    }
+                    if (temporary) {
+                        if (System.currentTimeMillis() - attributes.lastModifiedTime().toMillis() > TEMPORARYMILLIS) {
+                            delete(file);
+                        } else {
+                            total += attributes.size();
+                        }
+                        continue;
+                    }
+                    files.add(file);
+                    used.put(file, attributes.lastModifiedTime());
+                    sizes.put(file, attributes.size());
+                    total += attributes.size();
+                } catch (NoSuchFileException e) {
+                    //evicted by another run
+                }
+            }
+        }
+        for (Map.Entry<Path, FileTime> entry : markers.entrySet()) {
+            FileTime written = used.get(entry.getKey());
+            if (written == null) {
+                delete(marker(entry.getKey()));
+            } else if (entry.getValue().compareTo(written) > 0) {
+                used.put(entry.getKey(), entry.getValue());
+            }
+        }
+        files.sort(Comparator.comparing(used::get));
+        for (int i = 0; i < files.size() && total > maxBytes; i++) {
+            delete(files.get(i));
+            delete(marker(files.get(i)));
+            total -= sizes.get(files.get(i));
+        }
+    }
+
+    /**
+     * Sets the permissions of a file or directory of the cache, so runs by
+     * other users may share it. File systems without POSIX permissions keep
+     * their own defaults.
+     * @param path file or directory of the cache
+     * @param permissions permissions in the form of "rw-rw-r--"
+     * @throws IOException if the permissions cannot be set
+     */
+    private static void share(Path path, String permissions) throws IOException {
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(permissions));
+        } catch (UnsupportedOperationException e) {
+            //not a POSIX file system
+        }
+    }
+
+    /**
+     * Marks a file as just used, by moving a new marker over its old one
+     * @param file file of the cache
+     */
+    private void touch(Path file) {
+        Path temporary = null;
+        try {
+            temporary = Files.createTempFile(directory, file.getFileName().toString(), TEMPORARYEXTENSION);
+            share(temporary, FILEPERMISSIONS);
+            Files.move(temporary, marker(file), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            //the use goes unrecorded, which costs at most an early eviction
+        } finally {
+            if (temporary != null) {
+                delete(temporary);
+            }
+        }
+    }
+
+    /**
+     * @param file file of the cache
+     * @return the marker recording when the file was last used
+     */
+    private static Path marker(Path file) {
+        return file.resolveSibling(file.getFileName() + USEEXTENSION);
+    }
+
+    /**
+     * Deletes a file if it exists
+     * @param file file to be deleted
+     */
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            //left for the next eviction
+        }
+    }
+
+    /**
+     * Creates a SHA-256 digest which has already hashed the version and parameters
+     * @param compressionLevel compression level the tree is divided with
+     * @param maxAcceptableError error threshold the tree is divided with
+     * @return the digest
+     */
+    private static MessageDigest newDigest(double compressionLevel, double maxAcceptableError) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            //every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+        digest.update(VERSION.getBytes(StandardCharsets.US_ASCII));
+        byte[] parameters = new byte[2 * Long.BYTES];
+        long level = Double.doubleToLongBits(compressionLevel);
+        long error = Double.doubleToLongBits(maxAcceptableError);
+        for (int b = 0; b < Long.BYTES; b++) {
+            parameters[b] = (byte) (level >>> (Long.SIZE - Byte.SIZE * (b + 1)));
+            parameters[Long.BYTES + b] = (byte) (error >>> (Long.SIZE - Byte.SIZE * (b + 1)));
+        }
+        digest.update(parameters);
+        return digest;
+    }
+
+    /**
+     * Writes an int into a buffer, big-endian
+     * @param buffer buffer to be written
+     * @param at index of the first byte
+     * @param value int to be written
+     * @return index after the last byte
+     */
+    private static int putInt(byte[] buffer, int at, int value) {
+        buffer[at] = (byte) (value >>> 24);
+        buffer[at + 1] = (byte) (value >>> 16);
+        buffer[at + 2] = (byte) (value >>> 8);
+        buffer[at + 3] = (byte) value;
+        return at + Integer.BYTES;
+    }
+
+    /**
+     * @param bytes bytes to be written
+     * @return bytes as lowercase hex digits
+     */
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b & 0xFF));
+        }
+        return hex.toString();
+    }
+}
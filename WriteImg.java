@@ -1,57 +1,64 @@
 /**
  * Names: Reagan Buvens and Alison Teske
  * File name: WriteImg.java
- * Description: Class WriteImg has methods to write a given Color[][] into
- * an output file, using proper P3 image formatting, and to turn a given
- * P3 ppm into a Color[][].
+ * Description: Class WriteImg has methods to write a given Raster into
+ * an output file, using P3, P5 or P6 image formatting, and to turn a given
+ * ppm into a Raster.
  */
 
- import java.util.*;
 import java.io.*;
 public class WriteImg {
     /**
-     * Creates a Color[][] from a given ppm file
-     * @param filename ppm file to be turned into Color[][]
-     * @return Color[][] representation of the image
+     * Creates a Raster from a given P3, P5 or P6 ppm file
+     * @param filename ppm file to be turned into a Raster
+     * @return Raster representation of the image
+     * @throws IOException if the file cannot be found or read
      */
-    public static Color[][] createTwoD(String filename) throws FileNotFoundException {
-        Scanner imageInput = new Scanner(new File(filename));
-        while (!imageInput.hasNextInt()) {
-            imageInput.nextLine();
-        }
-            
-        int columns = imageInput.nextInt();
-        int rows = imageInput.nextInt();
-        imageInput.nextInt(); //skip int containing maximum color value
-        Color[][] picture = new Color[rows][columns];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                int r = imageInput.nextInt();
-                int g = imageInput.nextInt();
-                int b = imageInput.nextInt();
-                picture[i][j] = new Color(r,g,b);
+    public static Raster createTwoD(String filename) throws IOException {
+        return createTwoD(filename, false);
+    }
+
+    /**
+     * Creates a Raster from a given P3, P5 or P6 ppm file, optionally
+     * printing the rate at which its pixels were parsed
+     * @param filename ppm file to be turned into a Raster
+     * @param report true to print the number of pixels parsed per second
+     * @return Raster representation of the image
+     * @throws IOException if the file cannot be found or read
+     */
+    public static Raster createTwoD(String filename, boolean report) throws IOException {
+        try (PpmReader reader = new PpmReader(filename)) {
+            Raster picture = new Raster(reader.rows(), reader.columns());
+            reader.readRows(picture, 0, reader.rows());
+            if (report) {
+                System.out.printf("Parsed %d pixels of %s at %.0f pixels/s%n",
+                        (long) reader.rows() * reader.columns(), filename, reader.pixelsPerSecond());
             }
+            return picture;
         }
-        return picture;
     }
 
     /**
-     * Write the given Color[][] to the given output file filename, using formatting
+     * Write the given Raster to the given output file filename, using formatting
      * such that the file can be read as a .ppm file
-     * @param fileName file to which the Color[][] will be written
-     * @param img Color[][] representation of image
+     * @param fileName file to which the Raster will be written
+     * @param img Raster representation of image
      * @throws IOException if an error occurs with the given filename
      */
-    public static void writeImg(String fileName, Color[][] img) throws IOException {
-        PrintWriter out = new PrintWriter(fileName);
-        out.println("P3");
-        out.println(img[0].length + " " + img.length+ "\n255\n");
-        for (int i = 0; i < img.length; i++) {
-            for (int j = 0; j < img[0].length; j++) {
-                out.print(img[i][j] + " ");
-            }
-            out.println();
+    public static void writeImg(String fileName, Raster img) throws IOException {
+        writeImg(fileName, img, "P3");
+    }
+
+    /**
+     * Write the given Raster to the given output file filename in a given format
+     * @param fileName file to which the Raster will be written
+     * @param img Raster representation of image
+     * @param format "P3" for plain text, "P6" for binary color, "P5" for binary grayscale
+     * @throws IOException if an error occurs with the given filename
+     */
+    public static void writeImg(String fileName, Raster img, String format) throws IOException {
+        try (PpmWriter out = new PpmWriter(fileName, format, img.rows(), img.columns())) {
+            out.writeRows(img, 0, img.rows());
         }
-        out.close();
-    } 
+    }
 }
\ No newline at end of file
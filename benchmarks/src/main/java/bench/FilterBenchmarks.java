@@ -0,0 +1,58 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: FilterBenchmarks.java
+ * Description: Benchmarks of the Filter methods. The point filters change the
+ * image in place; their cost does not depend on the pixel values, so applying
+ * them to the same image over and over measures them fairly.
+ */
+package bench;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Thread)
+public class FilterBenchmarks {
+    private Object tint; //Color the image is tinted with
+    private Object curve; //ToneCurve the image is mapped through
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tint = Program.newColor(255, 200, 120);
+        curve = Program.gamma(2.2);
+    }
+
+    @Benchmark
+    public Object negative(ImageState state) {
+        Program.negative(state.image);
+        return state.image;
+    }
+
+    @Benchmark
+    public Object grayscale(ImageState state) {
+        Program.grayscale(state.image);
+        return state.image;
+    }
+
+    @Benchmark
+    public Object tint(ImageState state) {
+        Program.tint(state.image, tint);
+        return state.image;
+    }
+
+    @Benchmark
+    public Object curve(ImageState state) {
+        Program.curve(state.image, curve);
+        return state.image;
+    }
+
+    @Benchmark
+    public Object motionBlur(ImageState state) {
+        Program.filterMotionBlur(state.image, state.output);
+        return state.output;
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: ImageState.java
+ * Description: Class ImageState holds the synthetic image a benchmark runs on,
+ * at each size and content type, with a Raster of the same size to be written to.
+ */
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+public class ImageState {
+    @Param({"256", "1024", "2048"})
+    public int size; //number of rows and columns
+
+    @Param({Images.FLAT, Images.GRADIENT, Images.NOISE, Images.PHOTO})
+    public String content; //kind of image
+
+    public Object image; //Raster of the image
+    public Object output; //Raster of the same size, to be written to
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = Images.create(content, size);
+        output = Program.newRaster(size, size);
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: Images.java
+ * Description: Class Images creates the synthetic square images the benchmarks
+ * run on. The content types cover the range of trees the program builds:
+ * flat images stay a single Node, gradients split evenly, noise splits as far
+ * as the compression level allows, and photographic images mix smooth areas,
+ * hard edges and grain, giving a tree deep in places and shallow in others.
+ * Every image is made from a fixed seed, so runs measure the same pixels.
+ */
+package bench;
+
+import java.util.*;
+
+public final class Images {
+    public static final String FLAT = "flat";
+    public static final String GRADIENT = "gradient";
+    public static final String NOISE = "noise";
+    public static final String PHOTO = "photo";
+    private static final long SEED = 151; //seed of the random content
+    private static final int GRAIN = 12; //range of the noise added to photographic images
+    private static final int SHAPES = 24; //number of hard-edged shapes in photographic images
+
+    private Images() {
+    }
+
+    /**
+     * Creates a square image
+     * @param content FLAT, GRADIENT, NOISE or PHOTO
+     * @param size number of rows and columns
+     * @return Raster holding the image
+     */
+    public static Object create(String content, int size) {
+        Object raster = Program.newRaster(size, size);
+        int[] pixels = Program.pixels(raster);
+        Random random = new Random(SEED);
+        switch (content) {
+            case FLAT:
+                Arrays.fill(pixels, pack(90, 140, 200));
+                break;
+            case GRADIENT:
+                for (int i = 0; i < size; i++) {
+                    for (int j = 0; j < size; j++) {
+                        int red = j * 255 / size;
+                        int green = i * 255 / size;
+                        pixels[i * size + j] = pack(red, green, (red + green) / 2);
+                    }
+                }
+                break;
+            case NOISE:
+                for (int p = 0; p < pixels.length; p++) {
+                    pixels[p] = random.nextInt(1 << 24);
+                }
+                break;
+            case PHOTO:
+                photo(pixels, size, random);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown content " + content);
+        }
+        return raster;
+    }
+
+    /**
+     * Paints a smooth background of overlapping waves, then hard-edged
+     * rectangles and discs, then grain over everything
+     * @param pixels pixels of the image
+     * @param size number of rows and columns
+     * @param random source of the shapes and grain
+     */
+    private static void photo(int[] pixels, int size, Random random) {
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                double x = (double) j / size;
+                double y = (double) i / size;
+                int red = (int) (128 + 90 * Math.sin(3 * x + 2 * y));
+                int green = (int) (128 + 80 * Math.sin(5 * y - x));
+                int blue = (int) (128 + 70 * Math.cos(4 * x * y + 1));
+                pixels[i * size + j] = pack(red, green, blue);
+            }
+        }
+        for (int s = 0; s < SHAPES; s++) {
+            int rgb = random.nextInt(1 << 24);
+            int top = random.nextInt(size);
+            int left = random.nextInt(size);
+            int extent = 1 + random.nextInt(Math.max(1, size / 4));
+            boolean disc = random.nextBoolean();
+            for (int i = top; i < Math.min(size, top + extent); i++) {
+                for (int j = left; j < Math.min(size, left + extent); j++) {
+                    int di = 2 * (i - top) - extent;
+                    int dj = 2 * (j - left) - extent;
+                    if (!disc || di * di + dj * dj <= extent * extent) {
+                        pixels[i * size + j] = rgb;
+                    }
+                }
+            }
+        }
+        for (int p = 0; p < pixels.length; p++) {
+            int rgb = pixels[p];
+            int grain = random.nextInt(GRAIN) - GRAIN / 2;
+            pixels[p] = pack(((rgb >> 16) & 0xFF) + grain, ((rgb >> 8) & 0xFF) + grain, (rgb & 0xFF) + grain);
+        }
+    }
+
+    private static int pack(int red, int green, int blue) {
+        return (clamp(red) << 16) | (clamp(green) << 8) | clamp(blue);
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: IoBenchmarks.java
+ * Description: Benchmarks of reading and writing ppm files with WriteImg, in
+ * the text and binary formats. Files are written to a temporary directory,
+ * which is deleted at the end of the trial.
+ */
+package bench;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Thread)
+public class IoBenchmarks {
+    @Param({"P3", "P6"})
+    public String format; //ppm format read and written
+
+    private Path directory; //holds the files read and written
+    private String inputFile; //file holding the image, read by createTwoD
+    private String outputFile; //file written by writeImg
+
+    @Setup(Level.Trial)
+    public void setUp(ImageState state) throws IOException {
+        directory = Files.createTempDirectory("bench");
+        inputFile = directory.resolve("input.ppm").toString();
+        outputFile = directory.resolve("output.ppm").toString();
+        Program.writeImg(inputFile, state.image, format);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Paths.get(inputFile));
+        Files.deleteIfExists(Paths.get(outputFile));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public Object createTwoD() {
+        return Program.createTwoD(inputFile);
+    }
+
+    @Benchmark
+    public void writeImg(ImageState state) {
+        Program.writeImg(outputFile, state.image, format);
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: Program.java
+ * Description: Class Program calls into the image processing program for the
+ * benchmarks. The program's classes are in the default package, which code in
+ * a named package cannot name, so each method is found once by reflection and
+ * held as a MethodHandle in a static final field, with its class types erased
+ * to Object. Called with invokeExact, the JIT compiles each down to a direct
+ * call. Rasters, trees and the like are passed around as Objects.
+ */
+package bench;
+
+import java.lang.invoke.*;
+
+public final class Program {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodHandle NEWRASTER = constructor("Raster", int.class, int.class);
+    private static final MethodHandle PIXELS = method("Raster", "pixels", int[].class);
+    private static final MethodHandle NEWCOLOR = constructor("Color", int.class, int.class, int.class);
+    private static final MethodHandle CREATETWOD = staticMethod("WriteImg", "createTwoD", type("Raster"), String.class);
+    private static final MethodHandle WRITEIMG = staticMethod("WriteImg", "writeImg", void.class, String.class, type("Raster"), String.class);
+    private static final MethodHandle NEWQUADTREE = constructor("QuadTree", type("Raster"));
+    private static final MethodHandle DIVIDEREGULATED = method("QuadTree", "divideRegulated", void.class, type("Raster"), double.class, double.class);
+    private static final MethodHandle QUADCOMPRESSION = method("QuadTree", "quadCompression", void.class, type("Raster"));
+    private static final MethodHandle EDGEDETECTOR = method("QuadTree", "edgeDetector", void.class, type("Raster"), type("Raster"));
+    private static final MethodHandle MOTIONBLUR = method("QuadTree", "motionBlur", void.class, type("Raster"), type("Raster"));
+    private static final MethodHandle NEWSUMMEDAREATABLE = constructor("SummedAreaTable", type("Raster"));
+    private static final MethodHandle FINDAVERAGECOLOR = privateMethod("QuadTree", "findAverageColor", type("Color"),
+            type("RegionStats"), int.class, int.class, int.class, int.class);
+    private static final MethodHandle NEGATIVE = staticMethod("Filter", "negative", void.class, type("Raster"));
+    private static final MethodHandle GRAYSCALE = staticMethod("Filter", "grayscale", void.class, type("Raster"));
+    private static final MethodHandle TINT = staticMethod("Filter", "tint", void.class, type("Raster"), type("Color"));
+    private static final MethodHandle CURVE = staticMethod("Filter", "curve", void.class, type("Raster"), type("ToneCurve"));
+    private static final MethodHandle GAMMA = staticMethod("ToneCurve", "gamma", type("ToneCurve"), double.class);
+    private static final MethodHandle FILTERMOTIONBLUR = staticMethod("Filter", "motionBlur", void.class, type("Raster"), type("Raster"));
+    private static final MethodHandle MEASUREQUALITY = staticMethod("QualityMetrics", "measure", type("QualityMetrics"),
+            type("Raster"), type("Raster"), boolean.class);
+
+    private Program() {
+    }
+
+    public static Object newRaster(int rows, int columns) {
+        try {
+            return (Object) NEWRASTER.invokeExact(rows, columns);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static int[] pixels(Object raster) {
+        try {
+            return (int[]) (Object) PIXELS.invokeExact(raster);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static Object newColor(int red, int green, int blue) {
+        try {
+            return (Object) NEWCOLOR.invokeExact(red, green, blue);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static Object createTwoD(String fileName) {
+        try {
+            return (Object) CREATETWOD.invokeExact((Object) fileName);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static void writeImg(String fileName, Object raster, String format) {
+        try {
+            WRITEIMG.invokeExact((Object) fileName, raster, (Object) format);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static Object newQuadTree(Object raster) {
+        try {
+            return (Object) NEWQUADTREE.invokeExact(raster);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static void divideRegulated(Object tree, Object raster, double compressionLevel, double maxAcceptableError) {
+        try {
+            DIVIDEREGULATED.invokeExact(tree, raster, compressionLevel, maxAcceptableError);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static void quadCompression(Object tree, Object raster) {
+        try {
+            QUADCOMPRESSION.invokeExact(tree, raster);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static void edgeDetector(Object tree, Object orig, Object edges) {
+        try {
+            EDGEDETECTOR.invokeExact(tree, orig, edges);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static void motionBlur(Object tree, Object orig, Object blurred) {
+        try {
+            MOTIONBLUR.invokeExact(tree, orig, blurred);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static Object newSummedAreaTable(Object raster) {
+        try {
+            return (Object) NEWSUMMEDAREATABLE.invokeExact(raster);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static Object findAverageColor(Object tree, Object stats, int startRow, int startCol, int endRow, int endCol) {
+        try {
+            return (Object) FINDAVERAGECOLOR.invokeExact(tree, stats, startRow, startCol, endRow, endCol);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static void negative(Object raster) {
+        try {
+            NEGATIVE.invokeExact(raster);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static void grayscale(Object raster) {
+        try {
+            GRAYSCALE.invokeExact(raster);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static void tint(Object raster, Object color) {
+        try {
+            TINT.invokeExact(raster, color);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static void curve(Object raster, Object curve) {
+        try {
+            CURVE.invokeExact(raster, curve);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static Object gamma(double gamma) {
+        try {
+            return (Object) GAMMA.invokeExact(gamma);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static void filterMotionBlur(Object orig, Object blurred) {
+        try {
+            FILTERMOTIONBLUR.invokeExact(orig, blurred);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public static Object measureQuality(Object reference, Object image, boolean parallel) {
+        try {
+            return (Object) MEASUREQUALITY.invokeExact(reference, image, parallel);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Passes on anything thrown by a method, wrapping checked exceptions
+     * @param t thrown by the method
+     * @return never returns, so callers can throw the result
+     */
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new IllegalStateException(t);
+    }
+
+    /**
+     * Changes every class type of a method to Object, so it can be called
+     * with invokeExact without naming the program's classes
+     * @param handle method found by reflection
+     * @return the same method taking and returning Objects
+     */
+    private static MethodHandle erase(MethodHandle handle) {
+        return handle.asType(handle.type().erase());
+    }
+
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle constructor(String owner, Class<?>... params) {
+        try {
+            return erase(LOOKUP.findConstructor(type(owner), MethodType.methodType(void.class, params)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle method(String owner, String name, Class<?> returnType, Class<?>... params) {
+        try {
+            return erase(LOOKUP.findVirtual(type(owner), name, MethodType.methodType(returnType, params)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle staticMethod(String owner, String name, Class<?> returnType, Class<?>... params) {
+        try {
+            return erase(LOOKUP.findStatic(type(owner), name, MethodType.methodType(returnType, params)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle privateMethod(String owner, String name, Class<?> returnType, Class<?>... params) {
+        try {
+            return erase(MethodHandles.privateLookupIn(type(owner), LOOKUP)
+                    .findVirtual(type(owner), name, MethodType.methodType(returnType, params)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
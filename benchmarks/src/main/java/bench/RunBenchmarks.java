@@ -0,0 +1,25 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: RunBenchmarks.java
+ * Description: Runs the benchmarks with the gc profiler, so each result comes
+ * with its allocation rate. Takes the same arguments as the JMH runner, such
+ * as a regex of benchmarks to run or -p size=1024 to fix a parameter.
+ */
+package bench;
+
+import org.openjdk.jmh.profile.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+public final class RunBenchmarks {
+    private RunBenchmarks() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: TreeBenchmarks.java
+ * Description: Benchmarks of building a QuadTree and of rendering and filtering
+ * with it. divideRegulated is measured from a new tree, including its
+ * summed-area table, the same as Main builds one; the render and filter
+ * benchmarks use a tree built once per trial. The lowest compression level is
+ * the one Main uses for the edge and blur filters, the highest the one it
+ * builds its compression levels from. The quality benchmark measures the
+ * rendered image against the original, as Main does with --quality.
+ */
+package bench;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Thread)
+public class TreeBenchmarks {
+    private static final double ERRORTOLERANCE = 5; //the same as Main
+    private static final int REGIONS = 64; //number of regions averaged by findAverageColor
+
+    @Param({"0.01", "0.75"})
+    public double compressionLevel; //maxium allowed number of nodes per thousand pixels
+
+    private Object tree; //tree of the image, built once per trial
+    private Object table; //summed-area table of the image
+    private int[] regions; //start row, start column, end row and end column of each region
+    private Object rendered; //image drawn from the tree
+
+    @Setup(Level.Trial)
+    public void setUp(ImageState state) {
+        tree = Program.newQuadTree(state.image);
+        Program.divideRegulated(tree, state.image, compressionLevel, ERRORTOLERANCE);
+        table = Program.newSummedAreaTable(state.image);
+        rendered = Program.newRaster(state.size, state.size);
+        Program.quadCompression(tree, rendered);
+        //regions of every size a tree visits, from the whole image down to single pixels
+        regions = new int[REGIONS * 4];
+        Random random = new Random(state.size);
+        for (int r = 0; r < REGIONS; r++) {
+            int extent = Math.max(1, state.size >> (r % 12));
+            int startRow = random.nextInt(state.size - extent + 1);
+            int startCol = random.nextInt(state.size - extent + 1);
+            regions[4 * r] = startRow;
+            regions[4 * r + 1] = startCol;
+            regions[4 * r + 2] = startRow + extent;
+            regions[4 * r + 3] = startCol + extent;
+        }
+    }
+
+    @Benchmark
+    public Object divideRegulated(ImageState state) {
+        Object built = Program.newQuadTree(state.image);
+        Program.divideRegulated(built, state.image, compressionLevel, ERRORTOLERANCE);
+        return built;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REGIONS)
+    public void findAverageColor(Blackhole blackhole) {
+        for (int r = 0; r < REGIONS; r++) {
+            blackhole.consume(Program.findAverageColor(tree, table,
+                    regions[4 * r], regions[4 * r + 1], regions[4 * r + 2], regions[4 * r + 3]));
+        }
+    }
+
+    @Benchmark
+    public Object quadCompression(ImageState state) {
+        Program.quadCompression(tree, state.output);
+        return state.output;
+    }
+
+    @Benchmark
+    public Object edgeDetector(ImageState state) {
+        Program.edgeDetector(tree, state.image, state.output);
+        return state.output;
+    }
+
+    @Benchmark
+    public Object motionBlur(ImageState state) {
+        Program.motionBlur(tree, state.image, state.output);
+        return state.output;
+    }
+
+    @Benchmark
+    public Object measureQuality(ImageState state) {
+        return Program.measureQuality(state.image, rendered, false);
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: PatchedStatsTest.java
+ * Description: Tests of class PatchedStats: that its totals match a table
+ * built afresh from the edited image, and that its base table is rebuilt
+ * according to how much has been edited rather than how many edits there
+ * were, so many small edits stay cheap.
+ */
+
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PatchedStatsTest {
+    private static final long SEED = 151; //seed of the random pixels and edits
+    private static final int ROWS = 300; //rows of the test image
+    private static final int COLUMNS = 400; //columns of the test image
+
+    /**
+     * Creates an image of random pixels
+     * @param random source of the pixels
+     * @param rows number of rows
+     * @param columns number of columns
+     * @return the image
+     */
+    private static Raster randomImage(Random random, int rows, int columns) {
+        Raster image = new Raster(rows, columns);
+        int[] pixels = image.pixels();
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = Raster.pack(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+        }
+        return image;
+    }
+
+    /**
+     * Checks every total of a PatchedStats against a table built from its image,
+     * over rectangles of random size and position
+     * @param random source of the rectangles
+     * @param stats totals being checked
+     */
+    private static void assertMatchesRebuilt(Random random, PatchedStats stats) {
+        SummedAreaTable expected = new SummedAreaTable(stats.image());
+        for (int k = 0; k < 500; k++) {
+            int startRow = random.nextInt(ROWS);
+            int startCol = random.nextInt(COLUMNS);
+            int endRow = startRow + 1 + random.nextInt(ROWS - startRow);
+            int endCol = startCol + 1 + random.nextInt(COLUMNS - startCol);
+            assertEquals(expected.sumRed(startRow, startCol, endRow, endCol), stats.sumRed(startRow, startCol, endRow, endCol));
+            assertEquals(expected.sumGreen(startRow, startCol, endRow, endCol), stats.sumGreen(startRow, startCol, endRow, endCol));
+            assertEquals(expected.sumBlue(startRow, startCol, endRow, endCol), stats.sumBlue(startRow, startCol, endRow, endCol));
+            assertEquals(expected.sumSquares(startRow, startCol, endRow, endCol), stats.sumSquares(startRow, startCol, endRow, endCol));
+        }
+        assertEquals(expected.sumRed(0, 0, ROWS, COLUMNS), stats.sumRed(0, 0, ROWS, COLUMNS));
+    }
+
+    @Test
+    public void manySmallEditsDoNotRebuild() {
+        Random random = new Random(SEED);
+        PatchedStats stats = new PatchedStats(new SummedAreaTable(randomImage(random, ROWS, COLUMNS)));
+        for (int k = 0; k < 100; k++) {
+            stats.update(random.nextInt(ROWS), random.nextInt(COLUMNS), randomImage(random, 1, 1));
+        }
+        assertEquals(0, stats.rebuilds());
+        assertMatchesRebuilt(random, stats);
+    }
+
+    @Test
+    public void overlappingEditsMatchRebuiltTable() {
+        Random random = new Random(SEED);
+        PatchedStats stats = new PatchedStats(new SummedAreaTable(randomImage(random, ROWS, COLUMNS)));
+        for (int k = 0; k < 40; k++) {
+            int rows = 1 + random.nextInt(40);
+            int columns = 1 + random.nextInt(100);
+            stats.update(random.nextInt(ROWS - rows + 1), random.nextInt(COLUMNS - columns + 1), randomImage(random, rows, columns));
+            assertMatchesRebuilt(random, stats);
+        }
+    }
+
+    @Test
+    public void batchOfEditsMatchesRebuiltTable() {
+        Random random = new Random(SEED);
+        PatchedStats stats = new PatchedStats(new SummedAreaTable(randomImage(random, ROWS, COLUMNS)));
+        Raster next = randomImage(random, ROWS, COLUMNS);
+        List<int[]> rectangles = new ArrayList<>();
+        for (int startRow = 0; startRow < ROWS; startRow += 16) {
+            rectangles.add(new int[] {startRow, startRow % COLUMNS, Math.min(startRow + 16, ROWS), Math.min(startRow % COLUMNS + 32, COLUMNS)});
+        }
+        stats.update(next, rectangles);
+        assertEquals(0, stats.rebuilds());
+        assertMatchesRebuilt(random, stats);
+        for (int[] r : rectangles) {
+            assertEquals(next.pixels()[next.rowOffset(r[0]) + r[1]], stats.image().pixels()[stats.image().rowOffset(r[0]) + r[1]]);
+        }
+    }
+
+    @Test
+    public void largeEditsRebuild() {
+        Random random = new Random(SEED);
+        PatchedStats stats = new PatchedStats(new SummedAreaTable(randomImage(random, ROWS, COLUMNS)));
+        stats.update(0, 0, randomImage(random, ROWS / 2, COLUMNS));
+        assertEquals(1, stats.rebuilds());
+        assertMatchesRebuilt(random, stats);
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Names: Reagan Buvens & Alison Teske
+ * File name: VectorKernels.java
+ * Description: Class VectorKernels implements PixelKernels with the incubating
+ * Vector API, unpacking the channels of as many packed pixels as fit in a
+ * vector at once. Divisions are done as multiplies and shifts which are exact
+ * over the range of values they are given, so the output matches ScalarKernels.
+ * Compiled and run separately, with --add-modules jdk.incubator.vector; see README.
+ */
+
+import jdk.incubator.vector.*;
+
+public class VectorKernels extends ScalarKernels {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int MAXVALUE = 255; //maximum value of a color channel
+    private static final int RGBMASK = 0xFFFFFF; //mask for the three channels of a packed pixel
+    private static final int CHANNELMASK = 0xFF; //mask for a single channel
+    private static final int REDSHIFT = 16; //bit offset of the red channel
+    private static final int GREENSHIFT = 8; //bit offset of the green channel
+    private static final int GRAYPIXEL = 0x010101; //multiplier copying a channel value to all three channels
+    //(x * 5243) >>> 19 equals x / 100 for every x in [0, 25500]
+    private static final int HUNDREDTHMULTIPLIER = 5243;
+    private static final int HUNDREDTHSHIFT = 19;
+
+    @Override
+    public String name() { return "vector"; }
+
+    @Override
+    public void negative(int[] pixels, int from, int to) {
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            IntVector.fromArray(SPECIES, pixels, i).not().and(RGBMASK).intoArray(pixels, i);
+        }
+        super.negative(pixels, i, to);
+    }
+
+    @Override
+    public void grayscale(int[] pixels, int from, int to) {
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            IntVector v = IntVector.fromArray(SPECIES, pixels, i);
+            IntVector weighted = red(v).mul(30).add(green(v).mul(59)).add(blue(v).mul(11));
+            IntVector gray = weighted.mul(HUNDREDTHMULTIPLIER).lanewise(VectorOperators.LSHR, HUNDREDTHSHIFT);
+            gray.mul(GRAYPIXEL).intoArray(pixels, i);
+        }
+        super.grayscale(pixels, i, to);
+    }
+
+    @Override
+    public void tint(int[] pixels, int from, int to, int red, int green, int blue) {
+        if (red > MAXVALUE || green > MAXVALUE || blue > MAXVALUE) {
+            //products over 65535 are out of divideBy255's range, so the scalar kernel clamps them
+            super.tint(pixels, from, to, red, green, blue);
+            return;
+        }
+        //a negative tint gives 0, the same as a tint of 0
+        red = Math.max(0, red);
+        green = Math.max(0, green);
+        blue = Math.max(0, blue);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            IntVector v = IntVector.fromArray(SPECIES, pixels, i);
+            IntVector r = divideBy255(red(v).mul(red));
+            IntVector g = divideBy255(green(v).mul(green));
+            IntVector b = divideBy255(blue(v).mul(blue));
+            pack(r, g, b).intoArray(pixels, i);
+        }
+        super.tint(pixels, i, to, red, green, blue);
+    }
+
+    @Override
+    public void convolve(int[] in, int inStart, int[] out, int outStart, int count, int[] offsets, int[] weights, int[] shifts) {
+        int taps = offsets.length;
+        int y = 0;
+        for (int bound = SPECIES.loopBound(count); y < bound; y += SPECIES.length()) {
+            IntVector redTotal = IntVector.zero(SPECIES);
+            IntVector greenTotal = IntVector.zero(SPECIES);
+            IntVector blueTotal = IntVector.zero(SPECIES);
+            for (int t = 0; t < taps; t++) {
+                IntVector v = IntVector.fromArray(SPECIES, in, inStart + y + offsets[t]);
+                redTotal = redTotal.add(red(v).mul(weights[t]).lanewise(VectorOperators.ASHR, shifts[t]));
+                greenTotal = greenTotal.add(green(v).mul(weights[t]).lanewise(VectorOperators.ASHR, shifts[t]));
+                blueTotal = blueTotal.add(blue(v).mul(weights[t]).lanewise(VectorOperators.ASHR, shifts[t]));
+            }
+            pack(redTotal.abs().min(MAXVALUE), greenTotal.abs().min(MAXVALUE), blueTotal.abs().min(MAXVALUE))
+                    .intoArray(out, outStart + y);
+        }
+        super.convolve(in, inStart + y, out, outStart + y, count - y, offsets, weights, shifts);
+    }
+
+    private static IntVector red(IntVector v) {
+        return v.lanewise(VectorOperators.LSHR, REDSHIFT).and(CHANNELMASK);
+    }
+
+    private static IntVector green(IntVector v) {
+        return v.lanewise(VectorOperators.LSHR, GREENSHIFT).and(CHANNELMASK);
+    }
+
+    private static IntVector blue(IntVector v) {
+        return v.and(CHANNELMASK);
+    }
+
+    /**
+     * Packs three vectors of channel values, each already in 0-255
+     * @param r red values
+     * @param g green values
+     * @param b blue values
+     * @return packed 0xRRGGBB values
+     */
+    private static IntVector pack(IntVector r, IntVector g, IntVector b) {
+        return r.lanewise(VectorOperators.LSHL, REDSHIFT).or(g.lanewise(VectorOperators.LSHL, GREENSHIFT)).or(b);
+    }
+
+    /**
+     * Divides by 255 as (x + 1 + (x >> 8)) >> 8, which is exact for x in [0, 65535]
+     * @param x values to be divided
+     * @return x / 255, rounded down
+     */
+    private static IntVector divideBy255(IntVector x) {
+        return x.add(1).add(x.lanewise(VectorOperators.ASHR, 8)).lanewise(VectorOperators.ASHR, 8);
+    }
+}